@@ -0,0 +1,28 @@
+@echo off
+echo Chess Game Benchmarks
+echo =====================
+echo.
+
+rem JMH is not bundled. Put these jars in lib\ first:
+rem   jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3
+if not exist lib\jmh-core*.jar (
+    echo JMH not found! Please copy the JMH jars into the lib directory.
+    exit /b 1
+)
+
+echo Compiling the rules engine and benchmarks...
+if exist bench-bin rmdir /s /q bench-bin
+mkdir bench-bin
+dir /s /b src\com\chessgame\core\*.java bench\*.java > bench-bin\sources.txt
+javac -encoding UTF-8 -d bench-bin -cp "lib\*" -processor org.openjdk.jmh.generators.BenchmarkProcessor @bench-bin\sources.txt
+
+if %errorlevel% neq 0 (
+    echo.
+    echo Compilation failed! Please check the error messages above.
+    exit /b %errorlevel%
+)
+
+echo.
+echo Running benchmarks (results in bench-results.json)...
+echo.
+java -cp "bench-bin;lib\*" org.openjdk.jmh.Main -prof gc -rf json -rff bench-results.json %*
@@ -0,0 +1,31 @@
+#!/bin/bash
+
+echo "Chess Game Benchmarks"
+echo "====================="
+echo
+
+# JMH is not bundled. Put these jars in lib/ first:
+#   jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3
+if ! ls lib/jmh-core*.jar > /dev/null 2>&1; then
+    echo "JMH not found! Please copy the JMH jars into the lib directory."
+    exit 1
+fi
+
+echo "Compiling the rules engine and benchmarks..."
+rm -rf bench-bin
+mkdir -p bench-bin
+javac -encoding UTF-8 -d bench-bin -cp "lib/*" \
+    -processor org.openjdk.jmh.generators.BenchmarkProcessor \
+    $(find src/com/chessgame/core bench -name "*.java")
+
+if [ $? -ne 0 ]; then
+    echo
+    echo "Compilation failed! Please check the error messages above."
+    exit 1
+fi
+
+echo
+echo "Running benchmarks (results in bench-results.json)..."
+echo
+# Extra arguments go to JMH, e.g. a benchmark name filter: ./bench.sh RulesBenchmark
+java -cp "bench-bin:lib/*" org.openjdk.jmh.Main -prof gc -rf json -rff bench-results.json "$@"
@@ -0,0 +1,77 @@
+package com.chessgame.bench;
+
+import com.chessgame.core.board.Position;
+import com.chessgame.core.game.ChessGame;
+
+/**
+ * The fixed position corpus shared by all benchmarks.
+ * <p>
+ * Each position is reached by replaying a fixed move sequence through
+ * {@link ChessGame#movePiece(Position, Position)}, so the game's move history
+ * and repetition state are as realistic as the board. Moves are written in
+ * coordinate notation ("e2e4", "e1g1" for castling). Each position also has
+ * a legal follow-up move for benchmarking move creation.
+ */
+public enum BenchmarkPosition {
+    /** Ruy Lopez after 4...Nf6, White to move with castling available */
+    OPENING("e2e4 e7e5 g1f3 b8c6 f1b5 a7a6 b5a4 g8f6", "e1g1"),
+
+    /** Queen's Gambit Declined after Capablanca's 12...e5, White to move */
+    MIDDLEGAME("d2d4 d7d5 c2c4 e7e6 b1c3 g8f6 c1g5 f8e7 e2e3 e8g8 g1f3 b8d7 a1c1 c7c6 f1d3 d5c4 "
+            + "d3c4 f6d5 g5e7 d8e7 e1g1 d5c3 c1c3 e6e5", "d4e5"),
+
+    /** Rook, two knights and two pawns against two pawns, Black to move */
+    ENDGAME("c2c3 c7c6 g2g4 g8h6 a2a3 h6g4 f2f4 g4h2 h1h2 h7h5 h2h5 h8h5 e1f2 a7a6 d1a4 h5h3 f1h3 b7b6 "
+            + "a4a6 b8a6 h3d7 d8d7 f2f1 d7d2 c1d2 g7g5 f4g5 a6b4 c3b4 a8a3 b1a3 e7e5 e2e4 f8b4 d2b4 c8h3 "
+            + "g1h3 c6c5 b4c5 b6c5 b2b4 c5b4 a3c2 e8d7 c2b4", "d7e6");
+
+    private final String[] moves;
+    private final String nextMove;
+
+    BenchmarkPosition(String moves, String nextMove) {
+        this.moves = moves.split(" ");
+        this.nextMove = nextMove;
+    }
+
+    /**
+     * Creates a new game and plays the position's move sequence.
+     *
+     * @return The game, with the position's side to move
+     * @throws IllegalStateException if a move is rejected
+     */
+    public ChessGame createGame() {
+        ChessGame game = new ChessGame();
+        for (String move : moves) {
+            if (!game.movePiece(start(move), end(move))) {
+                throw new IllegalStateException("Illegal move " + move + " in " + name());
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Gets the origin of the position's follow-up move.
+     *
+     * @return The start position
+     */
+    public Position getNextMoveStart() {
+        return start(nextMove);
+    }
+
+    /**
+     * Gets the destination of the position's follow-up move.
+     *
+     * @return The end position
+     */
+    public Position getNextMoveEnd() {
+        return end(nextMove);
+    }
+
+    private static Position start(String move) {
+        return new Position(move.charAt(1) - '1', move.charAt(0) - 'a');
+    }
+
+    private static Position end(String move) {
+        return new Position(move.charAt(3) - '1', move.charAt(2) - 'a');
+    }
+}
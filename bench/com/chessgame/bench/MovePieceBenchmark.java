@@ -0,0 +1,46 @@
+package com.chessgame.bench;
+
+import com.chessgame.core.game.ChessGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Committing one move with {@link ChessGame#movePiece}: validation, move
+ * creation with its check and mate flags, execution and the game state update.
+ * A committed move can't be taken back without entering review mode, so the
+ * game is rebuilt (outside the measurement) before every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovePieceBenchmark {
+    @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+    public BenchmarkPosition position;
+
+    private ChessGame game;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        game = position.createGame();
+    }
+
+    @Benchmark
+    public boolean movePiece() {
+        return game.movePiece(position.getNextMoveStart(), position.getNextMoveEnd());
+    }
+}
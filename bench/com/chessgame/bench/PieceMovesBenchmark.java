@@ -0,0 +1,73 @@
+package com.chessgame.bench;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Position;
+import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.pieces.Piece;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Piece#calculateLegalMoves} for every piece of one type belonging to
+ * the side to move. A position with no such piece measures an empty loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PieceMovesBenchmark {
+    @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+    public BenchmarkPosition position;
+
+    @Param({ "PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING" })
+    public String pieceType;
+
+    private Board board;
+    private Piece[] pieces;
+    private Position[] squares;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        ChessGame game = position.createGame();
+        board = game.getBoard();
+        int type = Piece.class.getField(pieceType).getInt(null);
+
+        List<Piece> foundPieces = new ArrayList<>();
+        List<Position> foundSquares = new ArrayList<>();
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = board.getPieceAt(x, y);
+                if (piece != null && piece.getType() == type
+                        && piece.getPieceColor() == game.getCurrentPlayer().getPieceColor()) {
+                    foundPieces.add(piece);
+                    foundSquares.add(new Position(x, y));
+                }
+            }
+        }
+        pieces = foundPieces.toArray(new Piece[0]);
+        squares = foundSquares.toArray(new Position[0]);
+    }
+
+    @Benchmark
+    public void calculateLegalMoves(Blackhole blackhole) {
+        for (int i = 0; i < pieces.length; i++) {
+            blackhole.consume(pieces[i].calculateLegalMoves(board, squares[i]));
+        }
+    }
+}
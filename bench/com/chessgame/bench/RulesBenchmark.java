@@ -0,0 +1,56 @@
+package com.chessgame.bench;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.game.ChessGame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check and repetition detection and board copying on the benchmark corpus.
+ * None of these change the game or are cached by it, so one game per
+ * position is set up per trial. Checkmate, stalemate and game over go
+ * through the cached game status and are measured in {@link StatusBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+    @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+    public BenchmarkPosition position;
+
+    private ChessGame game;
+
+    @Setup
+    public void setUp() {
+        game = position.createGame();
+    }
+
+    @Benchmark
+    public boolean isCheck() {
+        return game.isCheck();
+    }
+
+    @Benchmark
+    public boolean isThreefoldRepetition() {
+        return game.isThreefoldRepetition();
+    }
+
+    @Benchmark
+    public Board boardCopy() {
+        return game.getBoard().copy();
+    }
+}
@@ -0,0 +1,69 @@
+package com.chessgame.bench;
+
+import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.game.GameStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Working out the game status of a position: checkmate, stalemate and game
+ * over detection. The game caches its status and legal moves until the
+ * position changes, so before every invocation (outside the measurement)
+ * the last move is taken back and replayed, which drops the caches and
+ * leaves the same position and history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusBenchmark {
+    @Param({ "OPENING", "MIDDLEGAME", "ENDGAME" })
+    public BenchmarkPosition position;
+
+    private ChessGame game;
+
+    @Setup
+    public void setUp() {
+        game = position.createGame();
+    }
+
+    @Setup(Level.Invocation)
+    public void dropCachedStatus() {
+        game.moveBackward();
+        game.moveForward();
+    }
+
+    @Benchmark
+    public GameStatus getStatus() {
+        return game.getStatus();
+    }
+
+    @Benchmark
+    public boolean isCheckmate() {
+        return game.isCheckmate();
+    }
+
+    @Benchmark
+    public boolean isStalemate() {
+        return game.isStalemate();
+    }
+
+    @Benchmark
+    public boolean isGameOver() {
+        return game.isGameOver();
+    }
+}
@@ -0,0 +1,292 @@
+package com.chessgame.core.archive;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.game.LegalMoveGenerator;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file of finished games, memory-mapped for random access.
+ * <p>
+ * The file holds a header, the game records and an index of record offsets:
+ * <pre>
+ * header   int magic "CGA1", int game count, long index offset
+ * record   byte result, varint ply count, varint FEN length, FEN bytes,
+ *          one byte per ply
+ * index    long record offset, per game
+ * </pre>
+ * A ply is stored as the index of its move among the legal moves of the
+ * position, sorted by packed value, so a typical game of 80 plies takes
+ * about 83 bytes. The FEN is empty for the standard starting position.
+ * Because the index is fixed-width, any game is found with one lookup.
+ * <p>
+ * The file is mapped in segments of 1 GB that overlap by the size of the
+ * largest record, so every record and index entry lies wholly inside the
+ * segment its offset falls in and archives are not limited to the 2 GB of a
+ * single mapping. The mapped buffers are only read with absolute gets, so one
+ * archive can be shared by several threads as long as each brings its own
+ * {@link Board}. Archives are written by {@link GameArchiveWriter}.
+ */
+public class GameArchive implements Closeable {
+    /** "CGA1" */
+    static final int MAGIC = 0x43474131;
+
+    /** Size of the header in bytes */
+    static final int HEADER_SIZE = 16;
+
+    /** The FEN bytes of a game from the standard starting position */
+    static final byte[] NO_FEN = new byte[0];
+
+    /** Most plies in one game */
+    static final int MAX_PLIES = 0xFFFF;
+
+    /** Most bytes in a stored FEN */
+    static final int MAX_FEN_LENGTH = 0xFF;
+
+    /** Most bytes in one record: result, two varints, FEN and plies */
+    static final int MAX_RECORD_SIZE = 1 + 3 + 2 + MAX_FEN_LENGTH + MAX_PLIES;
+
+    /** Segments start every 2^30 bytes */
+    private static final int SEGMENT_SHIFT = 30;
+
+    /** Results by code */
+    private static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+    /** A legal move buffer per thread for decoding, so reading a game allocates nothing */
+    private static final ThreadLocal<MoveList> LEGAL_MOVES = ThreadLocal.withInitial(MoveList::new);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final int gameCount;
+    private final long indexOffset;
+
+    /**
+     * Opens an archive file and maps it into memory.
+     *
+     * @param file The archive file
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public GameArchive(Path file) throws IOException {
+        this(file, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Opens an archive file and maps it in segments of a given size.
+     *
+     * @param segmentShift Segments start every 2^segmentShift bytes (at most
+     *                     30)
+     */
+    GameArchive(Path file, int segmentShift) throws IOException {
+        this.segmentShift = segmentShift;
+        segmentMask = (1L << segmentShift) - 1;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a game archive: " + file);
+            }
+            segments = new MappedByteBuffer[(int) ((size + segmentMask) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                long length = Math.min(size - start, (1L << segmentShift) + MAX_RECORD_SIZE);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            if (segments[0].getInt(0) != MAGIC) {
+                throw new IOException("Not a game archive: " + file);
+            }
+            gameCount = segments[0].getInt(4);
+            indexOffset = segments[0].getLong(8);
+            if (gameCount < 0 || indexOffset < HEADER_SIZE || indexOffset + 8L * gameCount != size) {
+                throw new IOException("Corrupt game archive: " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of games in the archive.
+     *
+     * @return The game count
+     */
+    public int size() {
+        return gameCount;
+    }
+
+    /**
+     * Gets the result of a game.
+     *
+     * @param index The game index (0 to size - 1)
+     * @return "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public String getResult(int index) {
+        long record = recordOffset(index);
+        return RESULTS[segment(record).get(local(record))];
+    }
+
+    /**
+     * Gets the number of plies of a game.
+     *
+     * @param index The game index (0 to size - 1)
+     * @return The ply count
+     */
+    public int getPlyCount(int index) {
+        long record = recordOffset(index);
+        return getVarint(segment(record), local(record) + 1);
+    }
+
+    /**
+     * Gets the position a game starts from.
+     *
+     * @param index The game index (0 to size - 1)
+     * @return The FEN string of the starting position
+     */
+    public String getStartFen(int index) {
+        long record = recordOffset(index);
+        MappedByteBuffer data = segment(record);
+        int offset = skipVarint(data, local(record) + 1);
+        int length = getVarint(data, offset);
+        if (length == 0) {
+            return Fen.START_POSITION;
+        }
+        byte[] fen = new byte[length];
+        ByteBuffer view = data.duplicate();
+        view.position(skipVarint(data, offset));
+        view.get(fen);
+        return new String(fen, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Decodes the moves of a game, playing them on a board.
+     *
+     * @param index The game index (0 to size - 1)
+     * @param board The board to play on; it is set up at the game's starting
+     *              position and left at its final position
+     * @param moves The list to fill with the moves as {@link PackedMove}
+     *              values; it is cleared first
+     */
+    public void readMoves(int index, Board board, MoveList moves) {
+        long record = recordOffset(index);
+        MappedByteBuffer data = segment(record);
+        int offset = local(record) + 1;
+        int plies = getVarint(data, offset);
+        offset = skipVarint(data, offset);
+        int fenLength = getVarint(data, offset);
+        offset = skipVarint(data, offset);
+        if (fenLength == 0) {
+            board.initialize();
+        } else {
+            String fen = getStartFen(index);
+            Fen.load(board, fen, 0, fen.length());
+        }
+        offset += fenLength;
+
+        moves.clear();
+        MoveList legalMoves = LEGAL_MOVES.get();
+        for (int i = 0; i < plies; i++) {
+            legalMoves.clear();
+            LegalMoveGenerator.generate(board, legalMoves);
+            legalMoves.sort();
+            int move = legalMoves.get(data.get(offset + i) & 0xFF);
+            board.makeMove(move);
+            moves.add(move);
+        }
+    }
+
+    /**
+     * Replays a game on a {@link ChessGame}, starting a new game from the
+     * game's starting position.
+     *
+     * @param index The game index (0 to size - 1)
+     * @param game  The game to play the moves on
+     * @return The number of moves played; less than the ply count if the
+     *         game rejected a move
+     */
+    public int replay(int index, ChessGame game) {
+        MoveList moves = new MoveList();
+        readMoves(index, new Board(), moves);
+        return game.replay(getStartFen(index), moves);
+    }
+
+    /**
+     * Closes the file. The mapping itself is released when it is garbage
+     * collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Gets the code a result is stored as.
+     *
+     * @return The code, or -1 if the result is not recognized
+     */
+    static int resultCode(String result) {
+        if (result == null) {
+            return 0;
+        }
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long recordOffset(int index) {
+        if (index < 0 || index >= gameCount) {
+            throw new IndexOutOfBoundsException("Game " + index + " of " + gameCount);
+        }
+        long entry = indexOffset + 8L * index;
+        return segment(entry).getLong(local(entry));
+    }
+
+    /**
+     * Gets the segment that holds everything starting at a file offset.
+     */
+    private MappedByteBuffer segment(long offset) {
+        return segments[(int) (offset >>> segmentShift)];
+    }
+
+    /**
+     * Gets the position of a file offset in its {@link #segment}.
+     */
+    private int local(long offset) {
+        return (int) (offset & segmentMask);
+    }
+
+    private static int getVarint(MappedByteBuffer data, int offset) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = data.get(offset++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int skipVarint(MappedByteBuffer data, int offset) {
+        while (data.get(offset) < 0) {
+            offset++;
+        }
+        return offset + 1;
+    }
+}
@@ -0,0 +1,257 @@
+package com.chessgame.core.archive;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.LegalMoveGenerator;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
+import com.chessgame.core.pgn.PgnGame;
+import com.chessgame.core.pgn.PgnListener;
+import com.chessgame.core.pgn.PgnReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes games to a {@link GameArchive} file.
+ * <p>
+ * Each move is stored as its index among the legal moves of its position,
+ * which takes one byte. Games are appended as they are added and their
+ * offsets are kept in memory (eight bytes per game); the offset index and
+ * the header are written by {@link #close()}, so an archive that was not
+ * closed cannot be opened.
+ * <p>
+ * Usage: {@code java com.chessgame.core.archive.GameArchiveWriter games.pgn games.cga}
+ * <br>
+ * Converts a PGN file into an archive and prints its size per ply.
+ */
+public class GameArchiveWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Board board = new Board();
+    private final MoveList legalMoves = new MoveList();
+    private byte[] encoded = new byte[256];
+    private long[] offsets = new long[1024];
+    private int gameCount;
+    private long position = GameArchive.HEADER_SIZE;
+    private boolean closed;
+
+    /**
+     * Creates a new archive file, replacing any existing file.
+     *
+     * @param file The archive file
+     * @throws IOException if the file cannot be created
+     */
+    public GameArchiveWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        // Room for the header, written on close
+        buffer.position(GameArchive.HEADER_SIZE);
+    }
+
+    /**
+     * Adds a game read from PGN.
+     *
+     * @param game The game
+     * @throws IOException if the archive cannot be written
+     */
+    public void add(PgnGame game) throws IOException {
+        add(game.getStartFen(), game.getMoves(), game.getResult());
+    }
+
+    /**
+     * Adds a game.
+     *
+     * @param startFen The FEN of the starting position, or null for the
+     *                 standard starting position
+     * @param moves    The moves of the game as {@link PackedMove} values
+     * @param result   "1-0", "0-1", "1/2-1/2", or "*" or null if unknown
+     * @return The index of the game in the archive
+     * @throws IOException              if the archive cannot be written
+     * @throws IllegalArgumentException if the FEN or a move is not legal, the
+     *                                  result is not recognized, or the game
+     *                                  is longer than 65,535 plies or its FEN
+     *                                  longer than 255 bytes; nothing is
+     *                                  written then
+     */
+    public int add(String startFen, MoveList moves, String result) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Archive is closed");
+        }
+        int resultCode = GameArchive.resultCode(result);
+        if (resultCode < 0) {
+            throw new IllegalArgumentException("Unknown result: " + result);
+        }
+        byte[] fen = GameArchive.NO_FEN;
+        if (startFen == null || startFen.equals(Fen.START_POSITION)) {
+            board.initialize();
+        } else {
+            Fen.load(board, startFen, 0, startFen.length());
+            fen = startFen.getBytes(StandardCharsets.US_ASCII);
+        }
+        // Records are bounded so the reader's segments can overlap by one record
+        int plies = moves.size();
+        if (plies > GameArchive.MAX_PLIES || fen.length > GameArchive.MAX_FEN_LENGTH) {
+            throw new IllegalArgumentException("Game too long to archive: " + plies + " plies, FEN of "
+                    + fen.length + " bytes");
+        }
+
+        // Encode every move before writing, so a bad game leaves no trace
+        if (encoded.length < plies) {
+            encoded = new byte[Math.max(plies, encoded.length * 2)];
+        }
+        for (int i = 0; i < plies; i++) {
+            int move = moves.get(i);
+            legalMoves.clear();
+            LegalMoveGenerator.generate(board, legalMoves);
+            if (legalMoves.indexOf(move) < 0) {
+                throw new IllegalArgumentException("Illegal move at ply " + (i + 1) + ": " + PackedMove.toString(move));
+            }
+            // The index in value order, which does not depend on generation order
+            int index = 0;
+            for (int j = 0; j < legalMoves.size(); j++) {
+                if (legalMoves.get(j) < move) {
+                    index++;
+                }
+            }
+            encoded[i] = (byte) index;
+            board.makeMove(move);
+        }
+
+        if (gameCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, gameCount * 2);
+        }
+        offsets[gameCount] = position;
+        put((byte) resultCode);
+        putVarint(plies);
+        putVarint(fen.length);
+        put(fen, fen.length);
+        put(encoded, plies);
+        return gameCount++;
+    }
+
+    /**
+     * Gets the number of games added so far.
+     *
+     * @return The game count
+     */
+    public int size() {
+        return gameCount;
+    }
+
+    /**
+     * Writes the offset index and the header and closes the file.
+     *
+     * @throws IOException if the archive cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexOffset = position;
+            for (int i = 0; i < gameCount; i++) {
+                if (buffer.remaining() < 8) {
+                    flush();
+                }
+                buffer.putLong(offsets[i]);
+            }
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(GameArchive.HEADER_SIZE);
+            header.putInt(GameArchive.MAGIC).putInt(gameCount).putLong(indexOffset).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+        position++;
+    }
+
+    private void put(byte[] bytes, int length) throws IOException {
+        for (int written = 0; written < length;) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(length - written, buffer.remaining());
+            buffer.put(bytes, written, n);
+            written += n;
+        }
+        position += length;
+    }
+
+    /**
+     * Writes an unsigned number seven bits at a time, low bits first.
+     */
+    private void putVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((byte) value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Converts a PGN file into an archive from the command line.
+     *
+     * @param args The PGN file and the archive file
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: GameArchiveWriter games.pgn games.cga");
+            System.exit(2);
+        }
+        Path archive = Paths.get(args[1]);
+        final long[] plies = new long[1];
+        long start = System.nanoTime();
+        try (final GameArchiveWriter writer = new GameArchiveWriter(archive)) {
+            new PgnReader(new PgnListener() {
+                @Override
+                public void onGame(PgnGame game) {
+                    try {
+                        writer.add(game);
+                        plies[0] += game.getMoves().size();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (IllegalArgumentException e) {
+                        System.out.printf("Byte %,d: %s%n", game.getOffset(), e.getMessage());
+                    }
+                }
+            }).read(Paths.get(args[0]));
+            System.out.printf("%,d games, %,d plies", writer.size(), plies[0]);
+        }
+        long bytes = Files.size(archive);
+        System.out.printf(" in %,d bytes (%.2f bytes per ply) in %.0f ms%n", bytes,
+                bytes / (double) Math.max(1, plies[0]), (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,368 @@
+package com.chessgame.core.archive;
+
+import com.chessgame.core.board.Board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An on-disk index from position hashes to the games and plies that reach
+ * them.
+ * <p>
+ * The index is a directory of runs, written by {@link PositionIndexWriter}.
+ * Each run file holds a header and entries of two longs, the position's
+ * {@link Board#getZobristKey() Zobrist key} and a hit (the game id and ply),
+ * sorted by key and then by hit:
+ * <pre>
+ * header   int magic "CPI2", int parts, long entry count,
+ *          int first replaced run, int last replaced run, int first part, int 0
+ * entry    long key, long hit
+ * </pre>
+ * A run written by a compaction is one of {@code parts} runs numbered from
+ * its first part on, which together replace every run numbered from the
+ * first to the last replaced run; other runs have 0 parts. A compaction
+ * only takes effect once all of its parts are in place, so a directory read
+ * in the middle of one, or after it was cut short, shows either the old
+ * runs or the new ones and never both.
+ * <p>
+ * Runs are memory-mapped when the index is opened and looked up with a
+ * binary search each, so a lookup touches a few dozen pages at most. New
+ * runs written after the index was opened are not seen until it is opened
+ * again.
+ */
+public class PositionIndex implements Closeable {
+    /** "CPI2" */
+    static final int MAGIC = 0x43504932;
+
+    /** Size of a run's header in bytes */
+    static final int HEADER_SIZE = 32;
+
+    /** Size of an entry in bytes */
+    static final int ENTRY_SIZE = 16;
+
+    /** Most entries in one run, so a run can be mapped in one piece */
+    static final long MAX_RUN_ENTRIES = (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE;
+
+    /** Highest ply a hit can hold */
+    static final int MAX_PLY = 0xFFFF;
+
+    /** Highest game id a hit can hold */
+    static final long MAX_GAME_ID = (1L << 48) - 1;
+
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_SUFFIX = ".pos";
+
+    private final List<MappedByteBuffer> runs = new ArrayList<>();
+    private final List<Long> runSizes = new ArrayList<>();
+    private long size;
+
+    /**
+     * Opens an index directory and maps its runs.
+     *
+     * @param directory The index directory
+     * @throws IOException if a run cannot be read or is not a run
+     */
+    public PositionIndex(Path directory) throws IOException {
+        for (Run run : runs(directory, true)) {
+            runs.add(run.buffer);
+            runSizes.add(run.entries);
+            size += run.entries;
+        }
+    }
+
+    /**
+     * Packs a game id and ply into a hit.
+     *
+     * @param gameId The game id (0 to 2^48 - 1)
+     * @param ply    The number of moves played to reach the position (0-65535)
+     * @return The hit
+     * @throws IllegalArgumentException if the game id or ply is out of range
+     */
+    public static long hit(long gameId, int ply) {
+        if (gameId < 0 || gameId > MAX_GAME_ID) {
+            throw new IllegalArgumentException("Game id out of range: " + gameId);
+        }
+        if (ply < 0 || ply > MAX_PLY) {
+            throw new IllegalArgumentException("Ply out of range: " + ply);
+        }
+        return (gameId << 16) | ply;
+    }
+
+    /**
+     * Gets the game id of a hit.
+     *
+     * @param hit The hit
+     * @return The game id
+     */
+    public static long gameOf(long hit) {
+        return hit >>> 16;
+    }
+
+    /**
+     * Gets the ply of a hit.
+     *
+     * @param hit The hit
+     * @return The number of moves played to reach the position
+     */
+    public static int plyOf(long hit) {
+        return (int) (hit & 0xFFFF);
+    }
+
+    /**
+     * Finds every game that reaches a position.
+     *
+     * @param key The position's Zobrist key
+     * @return The hits, in order of game id and ply within each run, oldest
+     *         runs first; see {@link #gameOf} and {@link #plyOf}
+     */
+    public long[] find(long key) {
+        long[] hits = new long[count(key)];
+        int found = 0;
+        for (int r = 0; r < runs.size(); r++) {
+            MappedByteBuffer run = runs.get(r);
+            long entries = runSizes.get(r);
+            for (long i = lowerBound(run, entries, key); i < entries && keyAt(run, i) == key; i++) {
+                hits[found++] = run.getLong(HEADER_SIZE + (int) (i * ENTRY_SIZE) + 8);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Counts the times games reach a position.
+     *
+     * @param key The position's Zobrist key
+     * @return The number of hits
+     */
+    public int count(long key) {
+        int count = 0;
+        for (int r = 0; r < runs.size(); r++) {
+            MappedByteBuffer run = runs.get(r);
+            long entries = runSizes.get(r);
+            count += (int) (upperBound(run, entries, key) - lowerBound(run, entries, key));
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of entries in the index.
+     *
+     * @return The entry count over all runs
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of runs in the index.
+     *
+     * @return The run count
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Releases the runs. The mappings themselves are released when they are
+     * garbage collected.
+     */
+    @Override
+    public void close() {
+        runs.clear();
+        runSizes.clear();
+        size = 0;
+    }
+
+    /**
+     * Finds the first entry with a key of at least the given key.
+     */
+    private static long lowerBound(MappedByteBuffer run, long entries, long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (keyAt(run, middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first entry with a key greater than the given key.
+     */
+    private static long upperBound(MappedByteBuffer run, long entries, long key) {
+        long low = 0;
+        long high = entries;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (keyAt(run, middle) <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static long keyAt(MappedByteBuffer run, long index) {
+        return run.getLong(HEADER_SIZE + (int) (index * ENTRY_SIZE));
+    }
+
+    /**
+     * Maps the runs of an index directory, oldest first, and keeps either
+     * the ones readers should see or the ones they should not: runs replaced
+     * by a finished compaction, and the parts of a compaction that never
+     * finished.
+     *
+     * @param live Whether to keep the runs readers should see
+     */
+    static List<Run> runs(Path directory, boolean live) throws IOException {
+        List<Run> all = new ArrayList<>();
+        for (Path file : runFiles(directory)) {
+            try {
+                all.add(new Run(file));
+            } catch (NoSuchFileException e) {
+                // A finished compaction deleted a run it replaced; look again
+                return runs(directory, live);
+            }
+        }
+
+        // A compaction is finished once all of its parts are in place
+        Map<Integer, Integer> partsFound = new HashMap<>();
+        for (Run run : all) {
+            if (run.parts > 0) {
+                partsFound.merge(run.firstPart, 1, Integer::sum);
+            }
+        }
+        List<Run> finished = new ArrayList<>();
+        for (Run run : all) {
+            if (run.parts > 0 && partsFound.get(run.firstPart) == run.parts) {
+                finished.add(run);
+            }
+        }
+
+        List<Run> result = new ArrayList<>();
+        for (Run run : all) {
+            boolean visible = run.parts == 0 || partsFound.get(run.firstPart) == run.parts;
+            for (int i = 0; visible && i < finished.size(); i++) {
+                Run compacted = finished.get(i);
+                visible = run.number < compacted.firstReplaced || run.number > compacted.lastReplaced;
+            }
+            if (visible == live) {
+                result.add(run);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists every run file of an index directory, oldest first, whether
+     * readers should see it or not.
+     */
+    static List<Path> runFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, RUN_PREFIX + "*" + RUN_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        // Run numbers are zero-padded, so names sort by age
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Gets the file name of a run.
+     */
+    static String runName(int number) {
+        return String.format("%s%08d%s", RUN_PREFIX, number, RUN_SUFFIX);
+    }
+
+    /**
+     * Gets the number of a run from its file name.
+     */
+    static int runNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(RUN_PREFIX.length(), name.length() - RUN_SUFFIX.length()));
+    }
+
+    /**
+     * Gets the number of the newest run in a directory.
+     *
+     * @return The run number, or -1 if there are no runs
+     */
+    static int lastRunNumber(Path directory) throws IOException {
+        List<Path> files = runFiles(directory);
+        return files.isEmpty() ? -1 : runNumber(files.get(files.size() - 1));
+    }
+
+    /**
+     * A mapped run file and its header.
+     */
+    static final class Run {
+        final Path file;
+        final int number;
+        final MappedByteBuffer buffer;
+        final long entries;
+
+        /** Number of runs the compaction that wrote this run wrote, or 0 */
+        final int parts;
+
+        /** Range of run numbers the compaction replaces */
+        final int firstReplaced;
+        final int lastReplaced;
+
+        /** Number of the compaction's first run */
+        final int firstPart;
+
+        /**
+         * Maps a run and checks its header against its size.
+         *
+         * @throws IOException if the run cannot be read or is not a run
+         */
+        Run(Path file) throws IOException {
+            this.file = file;
+            this.number = runNumber(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a position index run: " + file);
+            }
+            parts = buffer.getInt(4);
+            entries = buffer.getLong(8);
+            firstReplaced = buffer.getInt(16);
+            lastReplaced = buffer.getInt(20);
+            firstPart = buffer.getInt(24);
+            if (entries < 0 || HEADER_SIZE + entries * ENTRY_SIZE != buffer.capacity() || parts < 0) {
+                throw new IOException("Corrupt position index run: " + file);
+            }
+        }
+
+        /**
+         * Gets the lowest run number this run stands for: the first run its
+         * compaction replaces, or its own number.
+         */
+        int oldest() {
+            return parts > 0 ? firstReplaced : number;
+        }
+    }
+}
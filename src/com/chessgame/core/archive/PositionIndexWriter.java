@@ -0,0 +1,511 @@
+package com.chessgame.core.archive;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.pgn.PgnGame;
+import com.chessgame.core.pgn.PgnSpliterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes a {@link PositionIndex}.
+ * <p>
+ * Each added game is replayed on a board, and the Zobrist key of every
+ * position it reaches is buffered with the game id and ply. When the
+ * buffer fills, or on {@link #flush()}, it is sorted by key and hit with a
+ * radix sort and written as a new run, so games can be appended as they finish
+ * without rewriting what is already on disk. {@link #compact()} merges all
+ * runs into one to keep lookups to a single binary search.
+ * <p>
+ * The static {@code build} methods index a whole archive or PGN file in one
+ * parallel pass: every worker fills and writes runs of its own, and the
+ * runs are merged at the end.
+ * <p>
+ * Usage: {@code java com.chessgame.core.archive.PositionIndexWriter games.cga|games.pgn index-dir}
+ * <br>
+ * Indexes every position of an archive or PGN file.
+ */
+public class PositionIndexWriter implements Closeable {
+    /** Entries buffered before a run is written */
+    private static final int RUN_CAPACITY = 1 << 20;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final AtomicInteger nextRun;
+    private final RunBuffer buffer = new RunBuffer(this);
+
+    /**
+     * Opens an index directory for appending, creating it if needed.
+     *
+     * @param directory The index directory
+     * @throws IOException if the directory cannot be created or read
+     */
+    public PositionIndexWriter(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        nextRun = new AtomicInteger(PositionIndex.lastRunNumber(directory) + 1);
+    }
+
+    /**
+     * Adds every position of a game read from PGN.
+     *
+     * @param gameId The game id (0 to 2^48 - 1)
+     * @param game   The game
+     * @throws IOException if a full buffer cannot be written
+     * @throws IllegalArgumentException if the game id is out of range or the
+     *         game has more than 65,535 plies
+     */
+    public void add(long gameId, PgnGame game) throws IOException {
+        game.setUp(buffer.board);
+        add(gameId, game.getMoves());
+    }
+
+    /**
+     * Adds every position of a game.
+     *
+     * @param gameId   The game id (0 to 2^48 - 1)
+     * @param startFen The FEN of the starting position, or null for the
+     *                 standard starting position
+     * @param moves    The moves of the game as packed moves
+     * @throws IOException if a full buffer cannot be written
+     * @throws IllegalArgumentException if the game id is out of range or the
+     *         game has more than 65,535 plies
+     */
+    public void add(long gameId, String startFen, MoveList moves) throws IOException {
+        if (startFen == null) {
+            buffer.board.initialize();
+        } else {
+            Fen.load(buffer.board, startFen, 0, startFen.length());
+        }
+        add(gameId, moves);
+    }
+
+    private void add(long gameId, MoveList moves) throws IOException {
+        try {
+            buffer.addGame(gameId, moves);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the buffered positions as a new run, so they can be found by a
+     * {@link PositionIndex} opened afterwards.
+     *
+     * @throws IOException if the run cannot be written
+     */
+    public void flush() throws IOException {
+        try {
+            buffer.writeRun();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Flushes the buffered positions.
+     *
+     * @throws IOException if the run cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Merges all runs of the index into as few runs as the size limit of a
+     * run allows, replacing them. The merged runs record which runs they
+     * replace and only take their place once all of them are written, so
+     * readers see the old runs or the new ones but never both, even if the
+     * compaction is cut short. The replaced runs are deleted afterwards.
+     * Indexes opened before keep working on the old runs.
+     *
+     * @throws IOException if the runs cannot be read or written
+     */
+    public void compact() throws IOException {
+        flush();
+        List<PositionIndex.Run> runs = PositionIndex.runs(directory, true);
+        if (runs.size() >= 2) {
+            merge(runs);
+        }
+        for (PositionIndex.Run run : PositionIndex.runs(directory, false)) {
+            Files.deleteIfExists(run.file);
+        }
+    }
+
+    private void merge(List<PositionIndex.Run> runs) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>();
+        long total = 0;
+        int firstReplaced = Integer.MAX_VALUE;
+        int lastReplaced = -1;
+        for (PositionIndex.Run run : runs) {
+            total += run.entries;
+            firstReplaced = Math.min(firstReplaced, run.oldest());
+            lastReplaced = Math.max(lastReplaced, run.number);
+            RunCursor cursor = new RunCursor(run.buffer, run.entries);
+            if (cursor.next()) {
+                queue.add(cursor);
+            }
+        }
+        int parts = (int) Math.max(1, (total + PositionIndex.MAX_RUN_ENTRIES - 1) / PositionIndex.MAX_RUN_ENTRIES);
+        int firstPart = nextRun.getAndAdd(parts);
+
+        RunOutput out = null;
+        try {
+            for (int part = 0; part < parts; part++) {
+                out = new RunOutput(directory, firstPart + part, parts, firstReplaced, lastReplaced, firstPart);
+                while (!queue.isEmpty() && out.entries < PositionIndex.MAX_RUN_ENTRIES) {
+                    RunCursor cursor = queue.poll();
+                    out.put(cursor.key, cursor.hit);
+                    if (cursor.next()) {
+                        queue.add(cursor);
+                    }
+                }
+                out.finish();
+                out = null;
+            }
+        } finally {
+            if (out != null) {
+                out.abort();
+            }
+        }
+    }
+
+    /**
+     * Indexes every game of an archive in parallel, with the game's index in
+     * the archive as its id, and merges the result into one run.
+     *
+     * @param archive   The archive
+     * @param directory The index directory
+     * @throws IOException if the index cannot be written
+     */
+    public static void build(GameArchive archive, Path directory) throws IOException {
+        PositionIndexWriter writer = new PositionIndexWriter(directory);
+        try {
+            IntStream.range(0, archive.size()).parallel().collect(() -> new RunBuffer(writer), (runBuffer, game) -> {
+                // Decoding leaves the board at the final position; play from the start again
+                archive.readMoves(game, runBuffer.board, runBuffer.moves);
+                String fen = archive.getStartFen(game);
+                if (fen.equals(Fen.START_POSITION)) {
+                    runBuffer.board.initialize();
+                } else {
+                    Fen.load(runBuffer.board, fen, 0, fen.length());
+                }
+                runBuffer.addGame(game, runBuffer.moves);
+            }, RunBuffer::addAll).writeRun();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.compact();
+    }
+
+    /**
+     * Indexes every game of a PGN file in parallel, with the game's byte
+     * offset in the file as its id, and merges the result into one run.
+     *
+     * @param pgnFile   The PGN file
+     * @param directory The index directory
+     * @throws IOException if the file cannot be read or the index written
+     */
+    public static void build(Path pgnFile, Path directory) throws IOException {
+        PositionIndexWriter writer = new PositionIndexWriter(directory);
+        try (Stream<PgnGame> games = PgnSpliterator.games(pgnFile)) {
+            games.collect(() -> new RunBuffer(writer), (runBuffer, game) -> {
+                game.setUp(runBuffer.board);
+                runBuffer.addGame(game.getOffset(), game.getMoves());
+            }, RunBuffer::addAll).writeRun();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.compact();
+    }
+
+    /**
+     * Builds an index from the command line.
+     *
+     * @param args The archive or PGN file and the index directory
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: PositionIndexWriter games.cga|games.pgn index-dir");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path directory = Paths.get(args[1]);
+        long start = System.nanoTime();
+        if (source.toString().endsWith(".pgn")) {
+            build(source, directory);
+        } else {
+            try (GameArchive archive = new GameArchive(source)) {
+                build(archive, directory);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        try (PositionIndex index = new PositionIndex(directory)) {
+            System.out.printf("%,d positions in %,d run(s) in %.0f ms%n", index.size(), index.getRunCount(),
+                    nanos / 1e6);
+        }
+    }
+
+    /**
+     * Entries waiting to be sorted and written as a run, with a board to
+     * replay games on. Each thread uses its own.
+     */
+    private static final class RunBuffer {
+        private final PositionIndexWriter writer;
+        private final Board board = new Board();
+        private final MoveList moves = new MoveList();
+        private long[] keys = new long[1024];
+        private long[] hits = new long[1024];
+        private int size;
+
+        RunBuffer(PositionIndexWriter writer) {
+            this.writer = writer;
+        }
+
+        /**
+         * Adds every position of a game, with the board at its starting
+         * position.
+         */
+        void addGame(long gameId, MoveList moves) {
+            if (moves.size() > PositionIndex.MAX_PLY) {
+                throw new IllegalArgumentException("Game too long to index: " + moves.size() + " plies");
+            }
+            add(board.getZobristKey(), PositionIndex.hit(gameId, 0));
+            for (int i = 0; i < moves.size(); i++) {
+                board.makeMove(moves.get(i));
+                add(board.getZobristKey(), PositionIndex.hit(gameId, i + 1));
+            }
+        }
+
+        void add(long key, long hit) {
+            if (size == keys.length) {
+                if (size >= RUN_CAPACITY) {
+                    writeRun();
+                } else {
+                    keys = Arrays.copyOf(keys, Math.min(size * 2, RUN_CAPACITY));
+                    hits = Arrays.copyOf(hits, keys.length);
+                }
+            }
+            keys[size] = key;
+            hits[size] = hit;
+            size++;
+        }
+
+        /**
+         * Combines another thread's buffer into this one.
+         */
+        void addAll(RunBuffer other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.keys[i], other.hits[i]);
+            }
+        }
+
+        /**
+         * Sorts the entries and writes them as a new run.
+         */
+        void writeRun() {
+            if (size == 0) {
+                return;
+            }
+            sort();
+            RunOutput out = null;
+            try {
+                out = new RunOutput(writer.directory, writer.nextRun.getAndIncrement());
+                for (int i = 0; i < size; i++) {
+                    out.put(keys[i], hits[i]);
+                }
+                out.finish();
+                out = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (out != null) {
+                    out.abort();
+                }
+            }
+            size = 0;
+        }
+
+        /**
+         * Sorts the entries by key and then by hit, 16 bits at a time from
+         * the lowest bits of the hit to the highest bits of the key. Each
+         * pass is stable, so earlier passes order the entries a later pass
+         * leaves tied.
+         */
+        private void sort() {
+            long[] keysOut = new long[keys.length];
+            long[] hitsOut = new long[keys.length];
+            int[] counts = new int[1 << 16];
+            for (int pass = 0; pass < 8; pass++) {
+                boolean byKey = pass >= 4;
+                int shift = (pass % 4) * 16;
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < size; i++) {
+                    counts[digit(byKey ? keys[i] : hits[i], shift)]++;
+                }
+                int total = 0;
+                for (int d = 0; d < counts.length; d++) {
+                    int count = counts[d];
+                    counts[d] = total;
+                    total += count;
+                }
+                for (int i = 0; i < size; i++) {
+                    int slot = counts[digit(byKey ? keys[i] : hits[i], shift)]++;
+                    keysOut[slot] = keys[i];
+                    hitsOut[slot] = hits[i];
+                }
+                long[] swap = keys;
+                keys = keysOut;
+                keysOut = swap;
+                swap = hits;
+                hits = hitsOut;
+                hitsOut = swap;
+            }
+        }
+
+        /**
+         * Gets 16 bits of a signed value, with the sign bit flipped in the
+         * top digit so negative values sort first.
+         */
+        private static int digit(long value, int shift) {
+            long bits = shift == 48 ? value ^ Long.MIN_VALUE : value;
+            return (int) (bits >>> shift) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Writes one run to a temporary file and moves it into place when done,
+     * so readers never see a partial run.
+     */
+    private static final class RunOutput {
+        private final Path file;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private final int parts;
+        private final int firstReplaced;
+        private final int lastReplaced;
+        private final int firstPart;
+        private long entries;
+
+        /**
+         * Starts a run that replaces no other runs.
+         */
+        RunOutput(Path directory, int number) throws IOException {
+            this(directory, number, 0, 0, 0, 0);
+        }
+
+        /**
+         * Starts one of the runs a compaction writes.
+         *
+         * @param parts         The number of runs the compaction writes
+         * @param firstReplaced The number of the first run it replaces
+         * @param lastReplaced  The number of the last run it replaces
+         * @param firstPart     The number of its first run
+         */
+        RunOutput(Path directory, int number, int parts, int firstReplaced, int lastReplaced, int firstPart)
+                throws IOException {
+            this.parts = parts;
+            this.firstReplaced = firstReplaced;
+            this.lastReplaced = lastReplaced;
+            this.firstPart = firstPart;
+            file = directory.resolve(PositionIndex.runName(number));
+            temporary = directory.resolve(PositionIndex.runName(number) + ".tmp");
+            channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.position(PositionIndex.HEADER_SIZE);
+        }
+
+        void put(long key, long hit) throws IOException {
+            if (buffer.remaining() < PositionIndex.ENTRY_SIZE) {
+                flush();
+            }
+            buffer.putLong(key).putLong(hit);
+            entries++;
+        }
+
+        void finish() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(PositionIndex.HEADER_SIZE);
+                header.putInt(PositionIndex.MAGIC).putInt(parts).putLong(entries)
+                        .putInt(firstReplaced).putInt(lastReplaced).putInt(firstPart).putInt(0).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                // Leave the temporary file; it is never read as a run
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Walks the entries of one run during a merge.
+     */
+    private static final class RunCursor implements Comparable<RunCursor> {
+        private final MappedByteBuffer run;
+        private final long entries;
+        private long index = -1;
+        private long key;
+        private long hit;
+
+        RunCursor(MappedByteBuffer run, long entries) {
+            this.run = run;
+            this.entries = entries;
+        }
+
+        boolean next() {
+            if (++index >= entries) {
+                return false;
+            }
+            int offset = PositionIndex.HEADER_SIZE + (int) (index * PositionIndex.ENTRY_SIZE);
+            key = run.getLong(offset);
+            hit = run.getLong(offset + 8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            int byKey = Long.compare(key, other.key);
+            return byKey != 0 ? byKey : Long.compare(hit, other.hit);
+        }
+    }
+}
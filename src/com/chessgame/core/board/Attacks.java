@@ -0,0 +1,299 @@
+package com.chessgame.core.board;
+
+/**
+ * Precomputed attack tables for all piece types.
+ * <p>
+ * Knight, king and pawn attacks only depend on the origin square and are
+ * stored directly.
+ * <p>
+ * Rook and bishop attacks are looked up through magic bitboards: the blockers
+ * on a piece's relevant rays are multiplied by a per-square magic number and
+ * shifted down to an index into a shared table, so a slider's whole attack
+ * set costs one multiply, one shift and one array read. Magic numbers are
+ * found once at class initialization with a fixed-seed search, so the tables
+ * are identical on every run.
+ * <p>
+ * The tables of squares between and through two aligned squares are used
+ * for check evasions and pins.
+ */
+public final class Attacks {
+    private static final int[][] KNIGHT_OFFSETS = {
+            { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 }, { 1, 2 }, { 1, -2 }, { -1, 2 }, { -1, -2 } };
+    private static final int[][] KING_OFFSETS = {
+            { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } };
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+    private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    /** Per-rank seeds that let the magic search converge after few candidates */
+    private static final long[] MAGIC_SEEDS = { 728, 10316, 55013, 32803, 12281, 15100, 16645, 255 };
+
+    /** State of the deterministic random generator used for the magic search */
+    private static long seed;
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = leaperAttacks(square, KNIGHT_OFFSETS);
+            KING_ATTACKS[square] = leaperAttacks(square, KING_OFFSETS);
+            PAWN_ATTACKS[0][square] = leaperAttacks(square, new int[][] { { 1, -1 }, { 1, 1 } });
+            PAWN_ATTACKS[1][square] = leaperAttacks(square, new int[][] { { -1, -1 }, { -1, 1 } });
+        }
+
+        ROOK_TABLE = new long[initMasks(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS)];
+        BISHOP_TABLE = new long[initMasks(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS)];
+        for (int square = 0; square < 64; square++) {
+            findMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+            findMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS,
+                    BISHOP_TABLE);
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                if (from == to) {
+                    continue;
+                }
+                long ends = Bitboards.bit(from) | Bitboards.bit(to);
+                if ((rookAttacks(from, 0L) & Bitboards.bit(to)) != 0) {
+                    BETWEEN[from][to] = rookAttacks(from, Bitboards.bit(to)) & rookAttacks(to, Bitboards.bit(from));
+                    LINE[from][to] = (rookAttacks(from, 0L) & rookAttacks(to, 0L)) | ends;
+                } else if ((bishopAttacks(from, 0L) & Bitboards.bit(to)) != 0) {
+                    BETWEEN[from][to] = bishopAttacks(from, Bitboards.bit(to)) & bishopAttacks(to, Bitboards.bit(from));
+                    LINE[from][to] = (bishopAttacks(from, 0L) & bishopAttacks(to, 0L)) | ends;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     * Gets the squares a knight on the given square attacks.
+     *
+     * @param square The knight's square index (0-63)
+     * @return The attacked squares
+     */
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares a king on the given square attacks.
+     *
+     * @param square The king's square index (0-63)
+     * @return The attacked squares
+     */
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares a pawn of the given color on the given square attacks.
+     *
+     * @param color  The pawn's color index (0 for White, 1 for Black)
+     * @param square The pawn's square index (0-63)
+     * @return The diagonally attacked squares
+     */
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[color][square];
+    }
+
+    /**
+     * Gets the squares a rook on the given square attacks.
+     *
+     * @param square   The rook's square index (0-63)
+     * @param occupied Bitboard of all occupied squares
+     * @return The attacked squares, including the first blocker on each ray
+     */
+    public static long rookAttacks(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[ROOK_OFFSETS[square] + index];
+    }
+
+    /**
+     * Gets the squares a bishop on the given square attacks.
+     *
+     * @param square   The bishop's square index (0-63)
+     * @param occupied Bitboard of all occupied squares
+     * @return The attacked squares, including the first blocker on each ray
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + index];
+    }
+
+    /**
+     * Gets the squares a queen on the given square attacks.
+     *
+     * @param square   The queen's square index (0-63)
+     * @param occupied Bitboard of all occupied squares
+     * @return The attacked squares, including the first blocker on each ray
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Gets the squares strictly between two squares on a shared rank, file
+     * or diagonal.
+     *
+     * @param from The first square index (0-63)
+     * @param to   The second square index (0-63)
+     * @return The squares between them, or 0 if they are not aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Gets the whole rank, file or diagonal running through two squares.
+     *
+     * @param from The first square index (0-63)
+     * @param to   The second square index (0-63)
+     * @return The full line through both squares, or 0 if they are not aligned
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    /**
+     * Computes the relevant blocker masks for every square and assigns each
+     * square its slice of the shared attack table.
+     *
+     * @return The total table size needed
+     */
+    private static int initMasks(int[][] directions, long[] masks, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = relevantMask(square, directions);
+            int bits = Long.bitCount(masks[square]);
+            shifts[square] = 64 - bits;
+            offsets[square] = size;
+            size += 1 << bits;
+        }
+        return size;
+    }
+
+    private static void findMagic(int square, int[][] directions, long[] masks, long[] magics, int[] shifts,
+            int[] offsets, long[] table) {
+        long mask = masks[square];
+        int size = 1 << Long.bitCount(mask);
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+
+        // Enumerate every subset of the mask with the carry-rippler trick
+        long subset = 0L;
+        int count = 0;
+        do {
+            occupancies[count] = subset;
+            attacks[count] = slidingAttacks(square, subset, directions);
+            count++;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        int[] epoch = new int[size];
+        int attempt = 0;
+        seed = MAGIC_SEEDS[Bitboards.rankOf(square)];
+        while (true) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            attempt++;
+            boolean collision = false;
+            for (int i = 0; i < count && !collision; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shifts[square]);
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[offsets[square] + index] = attacks[i];
+                } else if (table[offsets[square] + index] != attacks[i]) {
+                    collision = true;
+                }
+            }
+            if (!collision) {
+                magics[square] = magic;
+                return;
+            }
+        }
+    }
+
+    private static long leaperAttacks(int square, int[][] offsets) {
+        long attacks = 0L;
+        for (int[] offset : offsets) {
+            int newX = Bitboards.rankOf(square) + offset[0];
+            int newY = Bitboards.fileOf(square) + offset[1];
+            if (isOnBoard(newX, newY)) {
+                attacks |= Bitboards.bit(Bitboards.square(newX, newY));
+            }
+        }
+        return attacks;
+    }
+
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        int x = Bitboards.rankOf(square);
+        int y = Bitboards.fileOf(square);
+        for (int[] direction : directions) {
+            int newX = x + direction[0];
+            int newY = y + direction[1];
+            // Edge squares never block anything beyond them, so leave them out
+            while (isOnBoard(newX + direction[0], newY + direction[1])) {
+                mask |= Bitboards.bit(Bitboards.square(newX, newY));
+                newX += direction[0];
+                newY += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        int x = Bitboards.rankOf(square);
+        int y = Bitboards.fileOf(square);
+        for (int[] direction : directions) {
+            int newX = x + direction[0];
+            int newY = y + direction[1];
+            while (isOnBoard(newX, newY)) {
+                long bit = Bitboards.bit(Bitboards.square(newX, newY));
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                newX += direction[0];
+                newY += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static boolean isOnBoard(int x, int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8;
+    }
+
+    private static long nextRandom() {
+        // xorshift64*
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -0,0 +1,90 @@
+package com.chessgame.core.board;
+
+/**
+ * Static helpers for working with 64-bit bitboards.
+ * Square indices run from 0 (a1) to 63 (h8), so a square index is
+ * {@code x * 8 + y} in the board's (rank, file) coordinates.
+ */
+public final class Bitboards {
+    /** Bitboard of all dark squares (a1, c1, ... h8) */
+    public static final long DARK_SQUARES = 0xAA55AA55AA55AA55L;
+
+    /** Bitboard of all light squares */
+    public static final long LIGHT_SQUARES = ~DARK_SQUARES;
+
+    /** Bitboard of the a-file */
+    public static final long FILE_A = 0x0101010101010101L;
+
+    /** Bitboard of the h-file */
+    public static final long FILE_H = FILE_A << 7;
+
+    /** Bitboard of the first rank */
+    public static final long RANK_1 = 0xFFL;
+
+    /** Bitboard of the eighth rank */
+    public static final long RANK_8 = RANK_1 << 56;
+
+    private Bitboards() {
+    }
+
+    /**
+     * Converts board coordinates to a square index.
+     *
+     * @param x The x-coordinate (rank, 0-7)
+     * @param y The y-coordinate (file, 0-7)
+     * @return The square index (0-63)
+     */
+    public static int square(int x, int y) {
+        return (x << 3) | y;
+    }
+
+    /**
+     * Gets the rank (x-coordinate) of a square index.
+     *
+     * @param square The square index (0-63)
+     * @return The rank (0-7)
+     */
+    public static int rankOf(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * Gets the file (y-coordinate) of a square index.
+     *
+     * @param square The square index (0-63)
+     * @return The file (0-7)
+     */
+    public static int fileOf(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Gets the single-bit bitboard for a square index.
+     *
+     * @param square The square index (0-63)
+     * @return A bitboard with only that square set
+     */
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Gets the index of the lowest set square in a bitboard.
+     *
+     * @param bitboard A non-empty bitboard
+     * @return The square index of the least significant set bit
+     */
+    public static int lowestSquare(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Converts a square index to a position.
+     *
+     * @param square The square index (0-63)
+     * @return The corresponding position
+     */
+    public static Position toPosition(int square) {
+        return new Position(rankOf(square), fileOf(square));
+    }
+}
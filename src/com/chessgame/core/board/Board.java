@@ -2,15 +2,134 @@ package com.chessgame.core.board;
 
 import com.chessgame.core.pieces.*;
 import com.chessgame.core.game.Move;
+import com.chessgame.core.game.PackedMove;
+
+import java.util.Arrays;
 
 /**
  * Represents a chess board with an 8x8 grid of squares.
  * Manages the placement and movement of pieces on the board.
+ * <p>
+ * Piece placement is stored twice: in a 64-entry mailbox of piece codes
+ * (see {@link Piece#code(int, int)}) for direct lookups and in bitboards (one
+ * per piece kind and color, plus color and occupancy masks) for set-wise
+ * queries. Both are kept in sync by {@link #setPieceAt(int, int, Piece)}.
+ * {@link #getPieceAt(int)} returns the shared, immutable {@link Piece} for a
+ * code, so the board holds no piece objects of its own and a copy is a
+ * handful of array copies.
+ * <p>
+ * The board also records the side to move, castling rights, en passant
+ * square and move counters, and maintains a Zobrist hash of the position that
+ * is updated incrementally whenever any of them change. {@link Fen} reads and
+ * writes all of this state as text.
+ * <p>
+ * Packed moves can be applied in place with {@link #makeMove(int)} and taken
+ * back with {@link #unmakeMove()}. Everything a move destroys (the captured
+ * piece, castling rights, en passant square, halfmove clock and hash) is
+ * saved on an undo stack, so searches and validation never need to copy
+ * the board.
  */
 public class Board {
-    /** 2D array of squares representing the board */
+    /** Castling right for White on the king side */
+    public static final int WHITE_KINGSIDE = 1;
+
+    /** Castling right for White on the queen side */
+    public static final int WHITE_QUEENSIDE = 2;
+
+    /** Castling right for Black on the king side */
+    public static final int BLACK_KINGSIDE = 4;
+
+    /** Castling right for Black on the queen side */
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /** All four castling rights */
+    public static final int ALL_CASTLING_RIGHTS = 15;
+
+    /** Square index meaning "no square" */
+    public static final int NO_SQUARE = -1;
+
+    /** Initial number of moves the undo stack can hold */
+    private static final int UNDO_STACK_CAPACITY = 256;
+
+    /** Castling rights kept when a piece moves from or to each square */
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING_RIGHTS);
+        CASTLING_MASKS[0] &= ~WHITE_QUEENSIDE; // a1
+        CASTLING_MASKS[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE); // e1
+        CASTLING_MASKS[7] &= ~WHITE_KINGSIDE; // h1
+        CASTLING_MASKS[56] &= ~BLACK_QUEENSIDE; // a8
+        CASTLING_MASKS[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE); // e8
+        CASTLING_MASKS[63] &= ~BLACK_KINGSIDE; // h8
+    }
+
+    /** 2D array of square views onto this board, created on first use */
     private Square[][] squares;
 
+    /** Piece codes indexed by square (0 = a1, 63 = h8), {@link Piece#NO_PIECE} if empty */
+    private final byte[] codes;
+
+    /** Occupancy bitboards for each piece kind, indexed by color * 6 + type - 1 */
+    private final long[] pieceBitboards;
+
+    /** Occupancy bitboards for each color, indexed by color */
+    private final long[] colorBitboards;
+
+    /** Bitboard of all occupied squares */
+    private long occupied;
+
+    /** Squares holding each color's pieces, in no particular order */
+    private final int[][] pieceLists;
+
+    /** Number of entries in each color's piece list */
+    private final int[] pieceCounts;
+
+    /** Position of each occupied square within its color's piece list */
+    private final int[] pieceListIndex;
+
+    /** King square for each color, or {@link #NO_SQUARE} */
+    private final int[] kingSquares;
+
+    /** The color to move ({@link Piece#WHITE} or {@link Piece#BLACK}) */
+    private int sideToMove;
+
+    /** Castling rights as a 4-bit mask of the castling constants */
+    private int castlingRights;
+
+    /** Square a pawn may capture en passant onto, or {@link #NO_SQUARE} */
+    private int enPassantSquare;
+
+    /** The en passant part of the hash, so it can be removed exactly */
+    private long enPassantKey;
+
+    /** Zobrist hash of the current position */
+    private long zobristKey;
+
+    /** Half-moves since the last pawn move or capture */
+    private int halfmoveClock;
+
+    /** The number of the current full move, starting at 1 and incremented after Black moves */
+    private int fullmoveNumber;
+
+    /** Undo stack: the packed moves made */
+    private int[] undoMoves;
+
+    /** Undo stack: the codes of the pieces captured, or {@link Piece#NO_PIECE} */
+    private byte[] undoCaptured;
+
+    /** Undo stack: castling rights, en passant square and halfmove clock */
+    private int[] undoStates;
+
+    /** Undo stack: the en passant part of the hash */
+    private long[] undoEnPassantKeys;
+
+    /** Undo stack: the full hash */
+    private long[] undoKeys;
+
+    /** Number of moves on the undo stack */
+    private int undoCount;
+
     /** The last move made on this board (important for en passant) */
     private Move lastMove;
 
@@ -19,8 +138,25 @@ public class Board {
      * positions.
      */
     public Board() {
-        squares = new Square[8][8];
-        initialize();
+        this(true);
+    }
+
+    /**
+     * Creates a new chess board, optionally leaving it empty.
+     *
+     * @param setUp true to place the pieces in their starting positions
+     */
+    private Board(boolean setUp) {
+        this.codes = new byte[64];
+        this.pieceBitboards = new long[12];
+        this.colorBitboards = new long[2];
+        this.pieceLists = new int[2][64];
+        this.pieceCounts = new int[2];
+        this.pieceListIndex = new int[64];
+        this.kingSquares = new int[] { NO_SQUARE, NO_SQUARE };
+        if (setUp) {
+            initialize();
+        }
     }
 
     /**
@@ -47,41 +183,61 @@ public class Board {
      */
     public void initialize() {
         // Clear the board first
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                squares[i][j] = new Square(i, j);
-            }
-        }
+        clear();
 
         // Place Black pieces (top ranks 7 and 8)
         // Back rank (rank 8)
-        squares[7][0].setPiece(new Rook("Black")); // a8
-        squares[7][1].setPiece(new Knight("Black")); // b8
-        squares[7][2].setPiece(new Bishop("Black")); // c8
-        squares[7][3].setPiece(new Queen("Black")); // d8
-        squares[7][4].setPiece(new King("Black")); // e8
-        squares[7][5].setPiece(new Bishop("Black")); // f8
-        squares[7][6].setPiece(new Knight("Black")); // g8
-        squares[7][7].setPiece(new Rook("Black")); // h8
+        setPieceAt(7, 0, Piece.create(Piece.ROOK, PieceColor.BLACK)); // a8
+        setPieceAt(7, 1, Piece.create(Piece.KNIGHT, PieceColor.BLACK)); // b8
+        setPieceAt(7, 2, Piece.create(Piece.BISHOP, PieceColor.BLACK)); // c8
+        setPieceAt(7, 3, Piece.create(Piece.QUEEN, PieceColor.BLACK)); // d8
+        setPieceAt(7, 4, Piece.create(Piece.KING, PieceColor.BLACK)); // e8
+        setPieceAt(7, 5, Piece.create(Piece.BISHOP, PieceColor.BLACK)); // f8
+        setPieceAt(7, 6, Piece.create(Piece.KNIGHT, PieceColor.BLACK)); // g8
+        setPieceAt(7, 7, Piece.create(Piece.ROOK, PieceColor.BLACK)); // h8
         // Pawns (rank 7)
         for (int j = 0; j < 8; j++) {
-            squares[6][j].setPiece(new Pawn("Black"));
+            setPieceAt(6, j, Piece.create(Piece.PAWN, PieceColor.BLACK));
         }
 
         // Place White pieces (bottom ranks 1 and 2)
         // Back rank (rank 1)
-        squares[0][0].setPiece(new Rook("White")); // a1
-        squares[0][1].setPiece(new Knight("White")); // b1
-        squares[0][2].setPiece(new Bishop("White")); // c1
-        squares[0][3].setPiece(new Queen("White")); // d1
-        squares[0][4].setPiece(new King("White")); // e1
-        squares[0][5].setPiece(new Bishop("White")); // f1
-        squares[0][6].setPiece(new Knight("White")); // g1
-        squares[0][7].setPiece(new Rook("White")); // h1
+        setPieceAt(0, 0, Piece.create(Piece.ROOK, PieceColor.WHITE)); // a1
+        setPieceAt(0, 1, Piece.create(Piece.KNIGHT, PieceColor.WHITE)); // b1
+        setPieceAt(0, 2, Piece.create(Piece.BISHOP, PieceColor.WHITE)); // c1
+        setPieceAt(0, 3, Piece.create(Piece.QUEEN, PieceColor.WHITE)); // d1
+        setPieceAt(0, 4, Piece.create(Piece.KING, PieceColor.WHITE)); // e1
+        setPieceAt(0, 5, Piece.create(Piece.BISHOP, PieceColor.WHITE)); // f1
+        setPieceAt(0, 6, Piece.create(Piece.KNIGHT, PieceColor.WHITE)); // g1
+        setPieceAt(0, 7, Piece.create(Piece.ROOK, PieceColor.WHITE)); // h1
         // Pawns (rank 2)
         for (int j = 0; j < 8; j++) {
-            squares[1][j].setPiece(new Pawn("White"));
+            setPieceAt(1, j, Piece.create(Piece.PAWN, PieceColor.WHITE));
         }
+
+        setCastlingRights(ALL_CASTLING_RIGHTS);
+    }
+
+    /**
+     * Removes every piece from the board.
+     */
+    public void clear() {
+        Arrays.fill(codes, (byte) Piece.NO_PIECE);
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        occupied = 0L;
+        pieceCounts[Piece.WHITE] = 0;
+        pieceCounts[Piece.BLACK] = 0;
+        kingSquares[Piece.WHITE] = NO_SQUARE;
+        kingSquares[Piece.BLACK] = NO_SQUARE;
+        sideToMove = Piece.WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        enPassantKey = 0L;
+        zobristKey = 0L;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        undoCount = 0;
     }
 
     /**
@@ -105,11 +261,31 @@ public class Board {
      */
     public Piece getPieceAt(int x, int y) {
         if (isValidPosition(x, y)) {
-            return squares[x][y].getPiece();
+            return Piece.of(codes[Bitboards.square(x, y)]);
         }
         return null;
     }
 
+    /**
+     * Gets the piece on the specified square index.
+     *
+     * @param square The square index (0-63)
+     * @return The piece on the square, or null if the square is empty
+     */
+    public Piece getPieceAt(int square) {
+        return Piece.of(codes[square]);
+    }
+
+    /**
+     * Gets the code of the piece on the specified square index.
+     *
+     * @param square The square index (0-63)
+     * @return The piece code, or {@link Piece#NO_PIECE} if the square is empty
+     */
+    public int getPieceCode(int square) {
+        return codes[square];
+    }
+
     /**
      * Sets a piece at the specified position.
      *
@@ -119,8 +295,444 @@ public class Board {
      */
     public void setPieceAt(int x, int y, Piece piece) {
         if (isValidPosition(x, y)) {
-            squares[x][y].setPiece(piece);
+            setPieceAt(Bitboards.square(x, y), piece);
+        }
+    }
+
+    /**
+     * Sets a piece on the specified square index, keeping the bitboards,
+     * piece lists and king squares in sync.
+     *
+     * @param square The square index (0-63)
+     * @param piece  The piece to place, or null to clear the square
+     */
+    public void setPieceAt(int square, Piece piece) {
+        setPieceCode(square, piece != null ? piece.getCode() : Piece.NO_PIECE);
+    }
+
+    private void setPieceCode(int square, int code) {
+        long mask = Bitboards.bit(square);
+        int previous = codes[square];
+        if (previous != Piece.NO_PIECE) {
+            int color = Piece.colorOf(previous);
+            int index = bitboardIndex(previous);
+            pieceBitboards[index] &= ~mask;
+            colorBitboards[color] &= ~mask;
+            occupied &= ~mask;
+            zobristKey ^= Zobrist.pieceKey(index, square);
+            removeFromPieceList(color, square);
+            if (Piece.typeOf(previous) == Piece.KING && kingSquares[color] == square) {
+                kingSquares[color] = NO_SQUARE;
+            }
+        }
+        codes[square] = (byte) code;
+        if (code != Piece.NO_PIECE) {
+            int color = Piece.colorOf(code);
+            int index = bitboardIndex(code);
+            pieceBitboards[index] |= mask;
+            colorBitboards[color] |= mask;
+            occupied |= mask;
+            zobristKey ^= Zobrist.pieceKey(index, square);
+            pieceListIndex[square] = pieceCounts[color];
+            pieceLists[color][pieceCounts[color]++] = square;
+            if (Piece.typeOf(code) == Piece.KING) {
+                kingSquares[color] = square;
+            }
+        }
+    }
+
+    private void removeFromPieceList(int color, int square) {
+        // Move the last entry into the freed slot
+        int index = pieceListIndex[square];
+        int last = pieceLists[color][--pieceCounts[color]];
+        pieceLists[color][index] = last;
+        pieceListIndex[last] = index;
+    }
+
+    /**
+     * Gets the number of pieces of the given color, king included.
+     *
+     * @param color The color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @return The number of pieces
+     */
+    public int getPieceCount(int color) {
+        return pieceCounts[color];
+    }
+
+    /**
+     * Gets the square of one piece of the given color. Together with
+     * {@link #getPieceCount(int)} this walks a color's pieces without
+     * scanning the board; the order changes as pieces move.
+     *
+     * @param color The color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @param index The list index (0 to piece count - 1)
+     * @return The square index (0-63)
+     */
+    public int getPieceSquare(int color, int index) {
+        return pieceLists[color][index];
+    }
+
+    /**
+     * Gets the square of the given color's king.
+     *
+     * @param color The color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @return The king's square index, or {@link #NO_SQUARE} if there is no king
+     */
+    public int getKingSquare(int color) {
+        return kingSquares[color];
+    }
+
+    /**
+     * Gets the Zobrist hash of the current position, covering piece
+     * placement, side to move, castling rights and en passant.
+     *
+     * @return The 64-bit position hash
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Gets the color to move.
+     *
+     * @return {@link Piece#WHITE} or {@link Piece#BLACK}
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * Sets the color to move.
+     *
+     * @param color {@link Piece#WHITE} or {@link Piece#BLACK}
+     */
+    public void setSideToMove(int color) {
+        if (color != sideToMove) {
+            sideToMove = color;
+            zobristKey ^= Zobrist.sideKey();
+        }
+    }
+
+    /**
+     * Gets the castling rights.
+     *
+     * @return A mask of {@link #WHITE_KINGSIDE}, {@link #WHITE_QUEENSIDE},
+     *         {@link #BLACK_KINGSIDE} and {@link #BLACK_QUEENSIDE}
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Sets the castling rights.
+     *
+     * @param rights A mask of the castling right constants
+     */
+    public void setCastlingRights(int rights) {
+        zobristKey ^= Zobrist.castlingKey(castlingRights) ^ Zobrist.castlingKey(rights);
+        castlingRights = rights;
+    }
+
+    /**
+     * Gets the square a pawn may capture en passant onto.
+     *
+     * @return The square index, or {@link #NO_SQUARE}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Sets the square a pawn may capture en passant onto, i.e. the square a
+     * pawn skipped over with its double move. The square only contributes to
+     * the hash when an enemy pawn is actually in place to capture.
+     *
+     * @param square The square index, or {@link #NO_SQUARE} to clear it
+     */
+    public void setEnPassantSquare(int square) {
+        zobristKey ^= enPassantKey;
+        enPassantSquare = square;
+        enPassantKey = 0L;
+        if (square != NO_SQUARE) {
+            // A pawn skipping the third rank is White's, so Black captures
+            int capturer = Bitboards.rankOf(square) == 2 ? Piece.BLACK : Piece.WHITE;
+            long capturers = Attacks.pawnAttacks(1 - capturer, square) & getPieceBitboard(capturer, Piece.PAWN);
+            if (capturers != 0) {
+                enPassantKey = Zobrist.enPassantKey(Bitboards.fileOf(square));
+            }
+        }
+        zobristKey ^= enPassantKey;
+    }
+
+    /**
+     * Gets the number of half-moves since the last pawn move or capture.
+     *
+     * @return The halfmove clock
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Sets the number of half-moves since the last pawn move or capture.
+     *
+     * @param halfmoveClock The halfmove clock
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Gets the number of the current full move.
+     *
+     * @return The fullmove number, starting at 1
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Sets the number of the current full move.
+     *
+     * @param fullmoveNumber The fullmove number (at least 1)
+     */
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * Makes a packed move on the board, including the rook move for castling,
+     * the pawn removal for en passant and the piece swap for promotion. The
+     * side to move, castling rights, en passant square, move counters and
+     * hash are updated, and the previous state is pushed on the undo stack.
+     * The move is not checked for legality.
+     *
+     * @param move The packed move (see {@link PackedMove})
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int piece = codes[from];
+        int captureSquare = to;
+        if (PackedMove.isEnPassant(move)) {
+            captureSquare = Bitboards.square(Bitboards.rankOf(from), Bitboards.fileOf(to));
+        }
+        int captured = codes[captureSquare];
+
+        // Save everything the move destroys
+        if (undoMoves == null || undoCount == undoMoves.length) {
+            growUndoStack();
+        }
+        undoMoves[undoCount] = move;
+        undoCaptured[undoCount] = (byte) captured;
+        undoStates[undoCount] = castlingRights | ((enPassantSquare + 1) << 4) | (halfmoveClock << 11);
+        undoEnPassantKeys[undoCount] = enPassantKey;
+        undoKeys[undoCount] = zobristKey;
+        undoCount++;
+
+        setEnPassantSquare(NO_SQUARE);
+        if (captured != Piece.NO_PIECE) {
+            setPieceCode(captureSquare, Piece.NO_PIECE);
+        }
+
+        if (PackedMove.isCastling(move)) {
+            boolean kingSide = to > from;
+            int rookFrom = kingSide ? from + 3 : from - 4;
+            int rookTo = kingSide ? from + 1 : from - 1;
+            int rook = codes[rookFrom];
+            setPieceCode(rookFrom, Piece.NO_PIECE);
+            setPieceCode(rookTo, rook);
+        }
+
+        setPieceCode(from, Piece.NO_PIECE);
+        int promotion = PackedMove.getPromotion(move);
+        setPieceCode(to, promotion != 0 ? Piece.code(Piece.colorOf(piece), promotion) : piece);
+
+        setCastlingRights(castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to]);
+        halfmoveClock = (Piece.typeOf(piece) == Piece.PAWN || captured != Piece.NO_PIECE) ? 0 : halfmoveClock + 1;
+        if ((PackedMove.getFlags(move) & PackedMove.DOUBLE_PUSH) != 0) {
+            setEnPassantSquare((from + to) >>> 1);
+        }
+        if (sideToMove == Piece.BLACK) {
+            fullmoveNumber++;
+        }
+        setSideToMove(1 - sideToMove);
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int)}, restoring the
+     * board exactly as it was before.
+     *
+     * @throws IllegalStateException if there is no move to take back
+     */
+    public void unmakeMove() {
+        if (undoCount == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        undoCount--;
+        int move = undoMoves[undoCount];
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int captured = undoCaptured[undoCount];
+
+        // A promoted piece turns back into a pawn of its color
+        int piece = codes[to];
+        if (PackedMove.getPromotion(move) != 0) {
+            piece = Piece.code(Piece.colorOf(piece), Piece.PAWN);
+        }
+        setPieceCode(to, Piece.NO_PIECE);
+        setPieceCode(from, piece);
+        if (captured != Piece.NO_PIECE) {
+            int captureSquare = PackedMove.isEnPassant(move)
+                    ? Bitboards.square(Bitboards.rankOf(from), Bitboards.fileOf(to))
+                    : to;
+            setPieceCode(captureSquare, captured);
+        }
+
+        if (PackedMove.isCastling(move)) {
+            boolean kingSide = to > from;
+            int rookFrom = kingSide ? from + 3 : from - 4;
+            int rookTo = kingSide ? from + 1 : from - 1;
+            int rook = codes[rookTo];
+            setPieceCode(rookTo, Piece.NO_PIECE);
+            setPieceCode(rookFrom, rook);
+        }
+
+        // Restore the saved state directly; the hash is restored wholesale
+        int state = undoStates[undoCount];
+        castlingRights = state & 0xF;
+        enPassantSquare = ((state >>> 4) & 0x7F) - 1;
+        halfmoveClock = state >>> 11;
+        enPassantKey = undoEnPassantKeys[undoCount];
+        sideToMove = 1 - sideToMove;
+        if (sideToMove == Piece.BLACK) {
+            fullmoveNumber--;
+        }
+        zobristKey = undoKeys[undoCount];
+    }
+
+    /**
+     * Gets the number of moves that can currently be taken back.
+     *
+     * @return The depth of the undo stack
+     */
+    public int getUndoDepth() {
+        return undoCount;
+    }
+
+    private void growUndoStack() {
+        if (undoMoves == null) {
+            undoMoves = new int[UNDO_STACK_CAPACITY];
+            undoCaptured = new byte[UNDO_STACK_CAPACITY];
+            undoStates = new int[UNDO_STACK_CAPACITY];
+            undoEnPassantKeys = new long[UNDO_STACK_CAPACITY];
+            undoKeys = new long[UNDO_STACK_CAPACITY];
+            return;
         }
+        int capacity = undoMoves.length * 2;
+        undoMoves = Arrays.copyOf(undoMoves, capacity);
+        undoCaptured = Arrays.copyOf(undoCaptured, capacity);
+        undoStates = Arrays.copyOf(undoStates, capacity);
+        undoEnPassantKeys = Arrays.copyOf(undoEnPassantKeys, capacity);
+        undoKeys = Arrays.copyOf(undoKeys, capacity);
+    }
+
+    /**
+     * Gets the bitboard of all pieces of the given color and type.
+     *
+     * @param color The color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @param type  The piece type code (e.g. {@link Piece#KNIGHT})
+     * @return The occupancy bitboard for that piece kind
+     */
+    public long getPieceBitboard(int color, int type) {
+        return pieceBitboards[color * 6 + type - 1];
+    }
+
+    /**
+     * Gets the bitboard of all pieces of the given color.
+     *
+     * @param color The color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @return The occupancy bitboard for that color
+     */
+    public long getColorBitboard(int color) {
+        return colorBitboards[color];
+    }
+
+    /**
+     * Gets the bitboard of all occupied squares.
+     *
+     * @return The occupancy bitboard
+     */
+    public long getOccupiedBitboard() {
+        return occupied;
+    }
+
+    /**
+     * Gets the squares attacked by a rook standing on the given square,
+     * taking the current blockers into account.
+     *
+     * @param square The square index (0-63)
+     * @return Bitboard of attacked squares, including occupied ones
+     */
+    public long getRookAttacks(int square) {
+        return Attacks.rookAttacks(square, occupied);
+    }
+
+    /**
+     * Gets the squares attacked by a bishop standing on the given square,
+     * taking the current blockers into account.
+     *
+     * @param square The square index (0-63)
+     * @return Bitboard of attacked squares, including occupied ones
+     */
+    public long getBishopAttacks(int square) {
+        return Attacks.bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Gets the squares attacked by a queen standing on the given square,
+     * taking the current blockers into account.
+     *
+     * @param square The square index (0-63)
+     * @return Bitboard of attacked squares, including occupied ones
+     */
+    public long getQueenAttacks(int square) {
+        return Attacks.queenAttacks(square, occupied);
+    }
+
+    /**
+     * Checks whether a square is attacked by any piece of the given color.
+     * Instead of generating the attacker's moves, this looks outward from the
+     * square: a knight, king or pawn of that color standing a knight, king or
+     * pawn step away, or a slider on the first blocker of a matching ray.
+     *
+     * @param square  The square index (0-63)
+     * @param byColor The attacking color index ({@link Piece#WHITE} or {@link Piece#BLACK})
+     * @return true if at least one piece of that color attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        int base = byColor * 6 - 1;
+        if ((Attacks.knightAttacks(square) & pieceBitboards[base + Piece.KNIGHT]) != 0) {
+            return true;
+        }
+        // A pawn attacks this square if a pawn of the other color here would attack it back
+        if ((Attacks.pawnAttacks(1 - byColor, square) & pieceBitboards[base + Piece.PAWN]) != 0) {
+            return true;
+        }
+        if ((Attacks.kingAttacks(square) & pieceBitboards[base + Piece.KING]) != 0) {
+            return true;
+        }
+        long queens = pieceBitboards[base + Piece.QUEEN];
+        long rookLike = pieceBitboards[base + Piece.ROOK] | queens;
+        if (rookLike != 0 && (Attacks.rookAttacks(square, occupied) & rookLike) != 0) {
+            return true;
+        }
+        long bishopLike = pieceBitboards[base + Piece.BISHOP] | queens;
+        return bishopLike != 0 && (Attacks.bishopAttacks(square, occupied) & bishopLike) != 0;
+    }
+
+    private static int bitboardIndex(int code) {
+        return Piece.colorOf(code) * 6 + Piece.typeOf(code) - 1;
     }
 
     /**
@@ -131,31 +743,52 @@ public class Board {
      * @return The square at the position, or null if the position is invalid
      */
     public Square getSquareAt(int x, int y) {
-        if (isValidPosition(x, y)) {
-            return squares[x][y];
+        if (!isValidPosition(x, y)) {
+            return null;
         }
-        return null;
+        // Copies made during search never ask for squares, so they are built lazily
+        if (squares == null) {
+            squares = new Square[8][8];
+            for (int i = 0; i < 8; i++) {
+                for (int j = 0; j < 8; j++) {
+                    squares[i][j] = new Square(this, i, j);
+                }
+            }
+        }
+        return squares[x][y];
     }
 
     /**
-     * Creates a deep copy of this board.
-     * Copies all pieces and the last move.
+     * Creates a copy of this board.
+     * Copies the piece placement, the position state and the last move. Pieces
+     * are shared and immutable, so this is a copy of the board's arrays. The
+     * undo stack is not copied, so the copy cannot take back earlier moves.
      *
      * @return A new board with the same state as this one
      */
     public Board copy() {
-        Board newBoard = new Board();
-
-        // Copy all pieces to their corresponding positions
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = getPieceAt(i, j);
-                if (piece != null) {
-                    // Create a new piece of the same type and color
-                    newBoard.setPieceAt(i, j, piece.copy());
-                }
-            }
+        Board newBoard = new Board(false);
+
+        // Copy the mailbox, bitboards, piece lists and king squares
+        System.arraycopy(codes, 0, newBoard.codes, 0, 64);
+        System.arraycopy(pieceBitboards, 0, newBoard.pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(colorBitboards, 0, newBoard.colorBitboards, 0, 2);
+        newBoard.occupied = occupied;
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            System.arraycopy(pieceLists[color], 0, newBoard.pieceLists[color], 0, pieceCounts[color]);
         }
+        System.arraycopy(pieceCounts, 0, newBoard.pieceCounts, 0, 2);
+        System.arraycopy(pieceListIndex, 0, newBoard.pieceListIndex, 0, 64);
+        System.arraycopy(kingSquares, 0, newBoard.kingSquares, 0, 2);
+
+        // Copy the position state along with its hash
+        newBoard.sideToMove = sideToMove;
+        newBoard.castlingRights = castlingRights;
+        newBoard.enPassantSquare = enPassantSquare;
+        newBoard.enPassantKey = enPassantKey;
+        newBoard.zobristKey = zobristKey;
+        newBoard.halfmoveClock = halfmoveClock;
+        newBoard.fullmoveNumber = fullmoveNumber;
 
         // Copy the last move if it exists
         if (this.lastMove != null) {
@@ -0,0 +1,319 @@
+package com.chessgame.core.board;
+
+import com.chessgame.core.pieces.Piece;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN).
+ * <p>
+ * The parser walks the characters of a {@link CharSequence} slice once and
+ * writes straight into a {@link Board}, without splitting the text or
+ * creating substrings, so a caller can feed lines of a large file (or a
+ * shared {@link StringBuilder}) into one reused board at I/O speed. The two
+ * move counters are optional, as they are in many test suites.
+ * <p>
+ * Besides the syntax, the parser rejects positions the rules engine cannot
+ * play from: a king count other than one a side, pawns on the first or last
+ * rank, the side that just moved left in check, or an en passant square no
+ * double pawn push can have left. Castling rights whose king or rook is not
+ * on its home square are dropped.
+ */
+public final class Fen {
+    /** The standard starting position */
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /** Piece letters by type code, in Black's lower case */
+    private static final String PIECE_LETTERS = " pnbrqk";
+
+    /** Castling letters in the order of the rights' bits */
+    private static final String CASTLING_LETTERS = "KQkq";
+
+    /** Home squares of the king and rook each castling right needs, in the order of the rights' bits */
+    private static final int[] CASTLING_KING_SQUARES = { 4, 4, 60, 60 };
+    private static final int[] CASTLING_ROOK_SQUARES = { 7, 0, 63, 56 };
+
+    private Fen() {
+    }
+
+    /**
+     * Creates a new board set up from a FEN string.
+     *
+     * @param fen The FEN string
+     * @return The board
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static Board parse(CharSequence fen) {
+        return parse(fen, 0, fen.length());
+    }
+
+    /**
+     * Creates a new board set up from part of a character sequence.
+     *
+     * @param text  The text holding the FEN
+     * @param start The index of the first character of the FEN
+     * @param end   The index after the last character of the FEN
+     * @return The board
+     * @throws IllegalArgumentException if the slice is not valid FEN
+     */
+    public static Board parse(CharSequence text, int start, int end) {
+        Board board = new Board();
+        load(board, text, start, end);
+        return board;
+    }
+
+    /**
+     * Sets up an existing board from part of a character sequence, replacing
+     * its position and clearing its undo stack. If the slice is not valid FEN
+     * the board is left in an unspecified state.
+     *
+     * @param board The board to set up
+     * @param text  The text holding the FEN
+     * @param start The index of the first character of the FEN
+     * @param end   The index after the last character of the FEN
+     * @throws IllegalArgumentException if the slice is not valid FEN
+     */
+    public static void load(Board board, CharSequence text, int start, int end) {
+        board.clear();
+        int i = skipSpaces(text, start, end);
+
+        // Piece placement, from a8 to h1
+        int x = 7;
+        int y = 0;
+        for (; i < end && !isSpace(text.charAt(i)); i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (y != 8 || x == 0) {
+                    throw invalid(text, start, end);
+                }
+                x--;
+                y = 0;
+            } else if (c >= '1' && c <= '8') {
+                y += c - '0';
+                if (y > 8) {
+                    throw invalid(text, start, end);
+                }
+            } else {
+                int type = PIECE_LETTERS.indexOf(c | 0x20);
+                if (type <= 0 || y > 7) {
+                    throw invalid(text, start, end);
+                }
+                int color = c < 'a' ? Piece.WHITE : Piece.BLACK;
+                board.setPieceAt(Bitboards.square(x, y++), Piece.of(Piece.code(color, type)));
+            }
+        }
+        if (x != 0 || y != 8) {
+            throw invalid(text, start, end);
+        }
+        // Move generation relies on one king a side and no pawns on the back ranks
+        long pawns = board.getPieceBitboard(Piece.WHITE, Piece.PAWN) | board.getPieceBitboard(Piece.BLACK, Piece.PAWN);
+        if (Long.bitCount(board.getPieceBitboard(Piece.WHITE, Piece.KING)) != 1
+                || Long.bitCount(board.getPieceBitboard(Piece.BLACK, Piece.KING)) != 1
+                || (pawns & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+            throw invalid(text, start, end);
+        }
+
+        // Side to move, whose opponent must not be in check
+        i = skipSpaces(text, i, end);
+        if (i >= end || (text.charAt(i) != 'w' && text.charAt(i) != 'b')) {
+            throw invalid(text, start, end);
+        }
+        int sideToMove = text.charAt(i++) == 'w' ? Piece.WHITE : Piece.BLACK;
+        if (board.isSquareAttacked(board.getKingSquare(1 - sideToMove), sideToMove)) {
+            throw invalid(text, start, end);
+        }
+        board.setSideToMove(sideToMove);
+        i = endOfField(text, i, start, end);
+
+        // Castling rights
+        int rights = 0;
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < end && !isSpace(text.charAt(i)); i++) {
+                int right = CASTLING_LETTERS.indexOf(text.charAt(i));
+                if (right < 0) {
+                    throw invalid(text, start, end);
+                }
+                rights |= 1 << right;
+            }
+            if (rights == 0) {
+                throw invalid(text, start, end);
+            }
+        }
+        // Keep only the rights whose king and rook are still at home, so the
+        // hash of a position does not depend on rights that can never be used
+        board.setCastlingRights(rights & castlingRightsInPlace(board));
+        i = endOfField(text, i, start, end);
+
+        // En passant square, set once the pawns are in place
+        if (i < end && text.charAt(i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= end) {
+                throw invalid(text, start, end);
+            }
+            char file = text.charAt(i);
+            char rank = text.charAt(i + 1);
+            // The square a pawn of the side that just moved skipped, with that
+            // pawn just past it and nothing on the square it came from
+            int pusher = 1 - sideToMove;
+            int target = Bitboards.square(rank - '1', file - 'a');
+            int pawnSquare = pusher == Piece.WHITE ? target + 8 : target - 8;
+            int originSquare = pusher == Piece.WHITE ? target - 8 : target + 8;
+            if (file < 'a' || file > 'h' || rank != (pusher == Piece.WHITE ? '3' : '6')
+                    || board.getPieceCode(target) != Piece.NO_PIECE
+                    || board.getPieceCode(originSquare) != Piece.NO_PIECE
+                    || board.getPieceCode(pawnSquare) != Piece.code(pusher, Piece.PAWN)) {
+                throw invalid(text, start, end);
+            }
+            board.setEnPassantSquare(target);
+            i += 2;
+        }
+        if (i < end && !isSpace(text.charAt(i))) {
+            throw invalid(text, start, end);
+        }
+        i = skipSpaces(text, i, end);
+
+        // Optional move counters
+        if (i < end) {
+            int halfmoveClock = 0;
+            int digits = 0;
+            for (; i < end && !isSpace(text.charAt(i)); i++, digits++) {
+                halfmoveClock = halfmoveClock * 10 + digit(text, i, start, end);
+            }
+            if (digits == 0 || digits > 4) {
+                throw invalid(text, start, end);
+            }
+            board.setHalfmoveClock(halfmoveClock);
+            i = skipSpaces(text, i, end);
+        }
+        if (i < end) {
+            int fullmoveNumber = 0;
+            int digits = 0;
+            for (; i < end && !isSpace(text.charAt(i)); i++, digits++) {
+                fullmoveNumber = fullmoveNumber * 10 + digit(text, i, start, end);
+            }
+            if (digits > 5 || fullmoveNumber == 0) {
+                throw invalid(text, start, end);
+            }
+            board.setFullmoveNumber(fullmoveNumber);
+            i = skipSpaces(text, i, end);
+        }
+        if (i < end) {
+            throw invalid(text, start, end);
+        }
+    }
+
+    /**
+     * Writes the position of a board as FEN.
+     *
+     * @param board The board
+     * @return The FEN string
+     */
+    public static String format(Board board) {
+        StringBuilder out = new StringBuilder(90);
+        format(board, out);
+        return out.toString();
+    }
+
+    /**
+     * Appends the position of a board as FEN to a builder.
+     *
+     * @param board The board
+     * @param out   The builder to append to
+     */
+    public static void format(Board board, StringBuilder out) {
+        for (int x = 7; x >= 0; x--) {
+            int empty = 0;
+            for (int y = 0; y < 8; y++) {
+                int code = board.getPieceCode(Bitboards.square(x, y));
+                if (code == Piece.NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    out.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(Piece.typeOf(code));
+                out.append(Piece.colorOf(code) == Piece.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (x > 0) {
+                out.append('/');
+            }
+        }
+
+        out.append(board.getSideToMove() == Piece.WHITE ? " w " : " b ");
+
+        int rights = board.getCastlingRights();
+        if (rights == 0) {
+            out.append('-');
+        }
+        for (int right = 0; right < 4; right++) {
+            if ((rights & (1 << right)) != 0) {
+                out.append(CASTLING_LETTERS.charAt(right));
+            }
+        }
+
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare == Board.NO_SQUARE) {
+            out.append(" -");
+        } else {
+            out.append(' ').append((char) ('a' + Bitboards.fileOf(enPassantSquare)))
+                    .append((char) ('1' + Bitboards.rankOf(enPassantSquare)));
+        }
+
+        out.append(' ').append(board.getHalfmoveClock()).append(' ').append(board.getFullmoveNumber());
+    }
+
+    /**
+     * Gets the castling rights whose king and rook stand on their home
+     * squares.
+     */
+    private static int castlingRightsInPlace(Board board) {
+        int rights = 0;
+        for (int right = 0; right < 4; right++) {
+            int color = right < 2 ? Piece.WHITE : Piece.BLACK;
+            if (board.getPieceCode(CASTLING_KING_SQUARES[right]) == Piece.code(color, Piece.KING)
+                    && board.getPieceCode(CASTLING_ROOK_SQUARES[right]) == Piece.code(color, Piece.ROOK)) {
+                rights |= 1 << right;
+            }
+        }
+        return rights;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipSpaces(CharSequence text, int i, int end) {
+        while (i < end && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks that a field ends at the given index and skips the spaces after it.
+     */
+    private static int endOfField(CharSequence text, int i, int start, int end) {
+        if (i >= end || !isSpace(text.charAt(i))) {
+            throw invalid(text, start, end);
+        }
+        return skipSpaces(text, i, end);
+    }
+
+    private static int digit(CharSequence text, int i, int start, int end) {
+        char c = text.charAt(i);
+        if (c < '0' || c > '9') {
+            throw invalid(text, start, end);
+        }
+        return c - '0';
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end) {
+        return new IllegalArgumentException("Invalid FEN: " + text.subSequence(start, end));
+    }
+}
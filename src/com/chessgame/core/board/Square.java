@@ -4,28 +4,30 @@ import com.chessgame.core.pieces.Piece;
 
 /**
  * Represents a square on the chess board.
- * Each square has coordinates and may contain a chess piece.
+ * Each square has coordinates and is a view onto the piece stored by its
+ * board, so reads and writes always agree with the board's bitboards.
  */
 public class Square {
+    /** The board this square belongs to */
+    private final Board board;
+
     /** The x-coordinate (rank, 0-7) */
     private int x;
 
     /** The y-coordinate (file, 0-7) */
     private int y;
 
-    /** The chess piece on this square, or null if empty */
-    private Piece piece;
-
     /**
-     * Creates a new empty square at the specified coordinates.
+     * Creates a new square view at the specified coordinates.
      *
-     * @param x The x-coordinate (0-7)
-     * @param y The y-coordinate (0-7)
+     * @param board The board this square belongs to
+     * @param x     The x-coordinate (0-7)
+     * @param y     The y-coordinate (0-7)
      */
-    public Square(int x, int y) {
+    Square(Board board, int x, int y) {
+        this.board = board;
         this.x = x;
         this.y = y;
-        this.piece = null;
     }
 
     /**
@@ -52,7 +54,7 @@ public class Square {
      * @return The piece on this square, or null if empty
      */
     public Piece getPiece() {
-        return piece;
+        return board.getPieceAt(x, y);
     }
 
     /**
@@ -61,7 +63,7 @@ public class Square {
      * @param piece The piece to place on this square, or null to clear the square
      */
     public void setPiece(Piece piece) {
-        this.piece = piece;
+        board.setPieceAt(x, y, piece);
     }
 
     /**
@@ -70,6 +72,6 @@ public class Square {
      * @return true if the square contains a piece, false otherwise
      */
     public boolean isOccupied() {
-        return piece != null;
+        return (board.getOccupiedBitboard() & Bitboards.bit(Bitboards.square(x, y))) != 0;
     }
 }
@@ -0,0 +1,99 @@
+package com.chessgame.core.board;
+
+/**
+ * Random keys for Zobrist hashing of board positions.
+ * <p>
+ * A position's hash is the XOR of one key per (piece kind, square), a key
+ * when Black is to move, a key for the set of castling rights and a key for
+ * the file of a capturable en passant square. Because XOR is its own
+ * inverse, the hash can be updated incrementally as pieces move. Keys are
+ * generated from a fixed seed so hashes are stable across runs.
+ */
+public final class Zobrist {
+    /** Keys indexed by piece kind (color * 6 + type - 1) and square index */
+    private static final long[][] PIECE_KEYS = new long[12][64];
+
+    /** Keys indexed by the 4-bit castling rights mask */
+    private static final long[] CASTLING_KEYS = new long[16];
+
+    /** Keys indexed by en passant file */
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+
+    /** Key toggled when Black is to move */
+    private static final long SIDE_KEY;
+
+    static {
+        long seed = 0x2F6B1C3D4E5A6978L;
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                seed = next(seed);
+                keys[square] = mix(seed);
+            }
+        }
+        // No castling rights hash to zero so an empty board has a zero key
+        for (int i = 1; i < CASTLING_KEYS.length; i++) {
+            seed = next(seed);
+            CASTLING_KEYS[i] = mix(seed);
+        }
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+            seed = next(seed);
+            EN_PASSANT_KEYS[i] = mix(seed);
+        }
+        seed = next(seed);
+        SIDE_KEY = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key for a piece kind on a square.
+     *
+     * @param pieceIndex The piece kind index (color * 6 + type - 1)
+     * @param square     The square index (0-63)
+     * @return The key
+     */
+    public static long pieceKey(int pieceIndex, int square) {
+        return PIECE_KEYS[pieceIndex][square];
+    }
+
+    /**
+     * Gets the key for a set of castling rights.
+     *
+     * @param castlingRights The 4-bit castling rights mask
+     * @return The key
+     */
+    public static long castlingKey(int castlingRights) {
+        return CASTLING_KEYS[castlingRights];
+    }
+
+    /**
+     * Gets the key for an en passant file.
+     *
+     * @param file The file of the en passant square (0-7)
+     * @return The key
+     */
+    public static long enPassantKey(int file) {
+        return EN_PASSANT_KEYS[file];
+    }
+
+    /**
+     * Gets the key toggled when Black is to move.
+     *
+     * @return The side-to-move key
+     */
+    public static long sideKey() {
+        return SIDE_KEY;
+    }
+
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,22 +1,23 @@
 package com.chessgame.core.game;
 
+import com.chessgame.core.board.Bitboards;
 import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
 import com.chessgame.core.board.Position;
 import com.chessgame.core.pieces.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.HashMap;
-import java.util.Map;
 
 public class ChessGame implements GameState {
     private GameMode gameMode;
     private String playerColor = "White"; // Default color
     private boolean isPassAndPlay = false;
 
-    // Constants
-    private static final String WHITE = "White";
-    private static final String BLACK = "Black";
+    // Material values indexed by piece type code
+    private static final int[] PIECE_VALUES = { 0, 1, 3, 3, 5, 9, 0 };
 
     // Game state
     private final Board board;
@@ -27,19 +28,44 @@ public class ChessGame implements GameState {
     private boolean isInReviewMode;
     private Move lastMove;
     private int currentMoveIndex;
-    private int movesSincePawnMoveOrCapture = 0;
+
+    // FEN of the position the game started from; null for the standard start
+    private String startFen;
+
+    // Status of the current position, computed on first use; null when stale
+    private GameStatus status;
+
+    // Whether the player to move is in check, computed with the status; draws
+    // hide it in the status itself
+    private boolean statusInCheck;
+
+    // Legal moves of the current position by origin square, and the Move
+    // objects handed out for each square; both rebuilt on first use per ply
+    private final LegalMoveTable legalMoves = new LegalMoveTable();
+    private boolean legalMovesStale = true;
+    private final List<List<Move>> legalMovesBySquare = new ArrayList<>(Collections.nCopies(64, (List<Move>) null));
+
+    // Position hashes by ply (index 0 is the starting position), with the
+    // ply of the most recent pawn move or capture at or before each entry
+    private long[] positionHashes = new long[256];
+    private int[] irreversiblePlies = new int[256];
+    private int positionCount = 0;
+
+    // Reusable packed-move buffer for rule checks
+    private final MoveList probeBuffer = new MoveList();
 
     // Constructor and initialization
     public ChessGame() {
         this.board = new Board();
-        this.whitePlayer = new Player(WHITE);
-        this.blackPlayer = new Player(BLACK);
+        this.whitePlayer = new Player(PieceColor.WHITE);
+        this.blackPlayer = new Player(PieceColor.BLACK);
         this.currentPlayer = whitePlayer;
         this.moveHistory = new ArrayList<>();
         this.isInReviewMode = false;
         this.lastMove = null;
         this.currentMoveIndex = -1;
         this.gameMode = GameMode.LOCAL; // Default mode
+        recordPosition(true);
     }
 
     public void setGameMode(GameMode mode) {
@@ -101,6 +127,7 @@ public class ChessGame implements GameState {
 
         // Update game state
         updateGameState(move);
+        annotateCheck(move);
 
         return true;
     }
@@ -118,40 +145,100 @@ public class ChessGame implements GameState {
             return false;
         }
 
+        // Promotion moves built by the UI don't know what they capture
+        if (move.getCapturedPiece() == null) {
+            move.setCapturedPiece(board.getPieceAt(end.getX(), end.getY()));
+        }
+
         // Execute the move directly
         executeMove(move);
 
         // Update game state
         updateGameState(move);
+        annotateCheck(move);
 
         return true;
     }
 
     private boolean isValidMove(Position start, Position end) {
-        if (!isLegalMove(start, end)) {
+        Piece piece = board.getPieceAt(start.getX(), start.getY());
+        if (piece == null || piece.getPieceColor() != currentPlayer.getPieceColor()) {
             return false;
         }
-        return !wouldPutKingInCheck(start, end);
+        return getLegalMoveTable().find(Bitboards.square(start.getX(), start.getY()),
+                Bitboards.square(end.getX(), end.getY())) != PackedMove.NONE;
     }
 
-    private boolean isLegalMove(Position start, Position end) {
+    /**
+     * Gets the legal moves of the piece on the given square. The list is
+     * built once per position and shared by later calls for the same square.
+     *
+     * @param start The position of the piece
+     * @return The legal moves (read-only), empty if the square is empty or not the current player's
+     */
+    public List<Move> getLegalMoves(Position start) {
+        if (!hasLegalMoves(start)) {
+            return Collections.emptyList();
+        }
+        int from = Bitboards.square(start.getX(), start.getY());
+        List<Move> moves = legalMovesBySquare.get(from);
+        if (moves == null) {
+            LegalMoveTable table = getLegalMoveTable();
+            List<Move> built = new ArrayList<>(table.count(from));
+            for (int i = 0; i < table.count(from); i++) {
+                built.add(PackedMove.toMove(table.get(from, i), board));
+            }
+            moves = Collections.unmodifiableList(built);
+            legalMovesBySquare.set(from, moves);
+        }
+        return moves;
+    }
+
+    /**
+     * Checks whether the piece on the given square has any legal move.
+     *
+     * @param start The position of the piece
+     * @return true if the square holds a piece of the current player that can move
+     */
+    public boolean hasLegalMoves(Position start) {
         Piece piece = board.getPieceAt(start.getX(), start.getY());
-        return piece != null &&
-                piece.getColor().equals(currentPlayer.getColor()) &&
-                piece.calculateLegalMoves(board, start).contains(new Move(start, end));
+        if (piece == null || piece.getPieceColor() != currentPlayer.getPieceColor()) {
+            return false;
+        }
+        return getLegalMoveTable().count(Bitboards.square(start.getX(), start.getY())) > 0;
+    }
+
+    private LegalMoveTable getLegalMoveTable() {
+        if (legalMovesStale) {
+            legalMoves.update(board);
+            Collections.fill(legalMovesBySquare, null);
+            legalMovesStale = false;
+        }
+        return legalMoves;
+    }
+
+    // Drops everything cached for the current position
+    private void invalidatePosition() {
+        status = null;
+        legalMovesStale = true;
     }
 
     public boolean wouldPutKingInCheck(Position start, Position end) {
         Piece movingPiece = board.getPieceAt(start.getX(), start.getY());
-        Piece capturedPiece = board.getPieceAt(end.getX(), end.getY());
+        int from = Bitboards.square(start.getX(), start.getY());
+        int to = Bitboards.square(end.getX(), end.getY());
 
-        board.setPieceAt(end.getX(), end.getY(), movingPiece);
-        board.setPieceAt(start.getX(), start.getY(), null);
+        // Use the generated move so castling and en passant are played out fully
+        probeBuffer.clear();
+        movingPiece.generateMoves(board, from, probeBuffer);
+        int move = probeBuffer.find(from, to);
+        if (move == PackedMove.NONE) {
+            move = PackedMove.encode(from, to, 0);
+        }
 
+        board.makeMove(move);
         boolean inCheck = isCheck();
-
-        board.setPieceAt(start.getX(), start.getY(), movingPiece);
-        board.setPieceAt(end.getX(), end.getY(), capturedPiece);
+        board.unmakeMove();
 
         return inCheck;
     }
@@ -170,77 +257,11 @@ public class ChessGame implements GameState {
             handleEnPassant(move);
         }
 
-        // Execute move temporarily to check for check/checkmate
-        executeMove(move);
-
-        // Switch turn temporarily to check from opponent's perspective
-        switchTurn();
-        boolean isCheck = isCheck();
-        boolean isCheckmate = isCheckmate();
-        switchTurn(); // Switch back
-
-        // Undo the move
-        undoMove(move);
-
-        // Set the check and checkmate flags
-        move.setCheck(isCheck);
-        move.setCheckmate(isCheckmate);
-
-        // Set the move notation
-        String notation = generateMoveNotation(move);
-        move.setNotation(notation);
-
         return move;
     }
 
-    private String generateMoveNotation(Move move) {
-        StringBuilder notation = new StringBuilder();
-        Piece piece = move.getMovingPiece();
-
-        // Handle castling
-        if (move.isCastling()) {
-            notation.append(move.getEnd().getY() > move.getStart().getY() ? "O-O" : "O-O-O");
-        } else {
-            // Add piece letter (except for pawns)
-            if (!(piece instanceof Pawn)) {
-                if (piece instanceof King)
-                    notation.append("K");
-                else if (piece instanceof Queen)
-                    notation.append("Q");
-                else if (piece instanceof Rook)
-                    notation.append("R");
-                else if (piece instanceof Bishop)
-                    notation.append("B");
-                else if (piece instanceof Knight)
-                    notation.append("N");
-            }
-
-            // Add capture symbol
-            if (move.getCapturedPiece() != null ||
-                    (piece instanceof Pawn && move.getStart().getY() != move.getEnd().getY())) {
-                if (piece instanceof Pawn) {
-                    notation.append((char) ('a' + move.getStart().getY()));
-                }
-                notation.append("x");
-            }
-
-            // Add destination square
-            notation.append((char) ('a' + move.getEnd().getY()))
-                    .append(move.getEnd().getX() + 1);
-        }
-
-        // Add check or checkmate symbol
-        if (move.isCheckmate()) {
-            notation.append("#");
-        } else if (move.isCheck()) {
-            notation.append("+");
-        }
-
-        return notation.toString();
-    }
-
     private boolean isKingCastling(Piece movingPiece, Position start, Position end) {
-        if (!(movingPiece instanceof King)) {
+        if (movingPiece.getType() != Piece.KING) {
             return false;
         }
 
@@ -249,16 +270,13 @@ public class ChessGame implements GameState {
     }
 
     private boolean isEnPassantCapture(Piece movingPiece, Position start, Position end) {
-        return movingPiece instanceof Pawn &&
+        return movingPiece.getType() == Piece.PAWN &&
                 Math.abs(end.getY() - start.getY()) == 1 &&
-                board.getPieceAt(end.getX(), end.getY()) == null &&
-                lastMove != null &&
-                lastMove.getMovingPiece() instanceof Pawn &&
-                Math.abs(lastMove.getStart().getX() - lastMove.getEnd().getX()) == 2;
+                Bitboards.square(end.getX(), end.getY()) == board.getEnPassantSquare();
     }
 
     private void handleEnPassant(Move move) {
-        Position capturedPawnPosition = new Position(lastMove.getEnd().getX(), lastMove.getEnd().getY());
+        Position capturedPawnPosition = new Position(move.getStart().getX(), move.getEnd().getY());
         Piece capturedPawn = board.getPieceAt(capturedPawnPosition.getX(), capturedPawnPosition.getY());
         move.setCapturedPiece(capturedPawn);
         move.setEnPassant(true);
@@ -281,69 +299,22 @@ public class ChessGame implements GameState {
         Piece rook = board.getPieceAt(rookStart.getX(), rookStart.getY());
 
         // Set the castling information in the move
-        if (rook != null && rook instanceof Rook) {
+        if (rook != null && rook.getType() == Piece.ROOK) {
             move.setCastlingMove(rookStart, rookEnd, rook);
         }
     }
 
     private void executeMove(Move move) {
-        Position start = move.getStart();
-        Position end = move.getEnd();
-        Piece movingPiece = move.getMovingPiece();
-
-        // Handle promotion
-        if (move.isPromotion()) {
-            board.setPieceAt(end.getX(), end.getY(), move.getPromotedPiece());
-            board.setPieceAt(start.getX(), start.getY(), null);
-            return;
-        }
-
-        // Update piece's moved status if it's a King or Rook
-        if (movingPiece instanceof King) {
-            ((King) movingPiece).setHasMoved(true);
-        } else if (movingPiece instanceof Rook) {
-            ((Rook) movingPiece).setHasMoved(true);
-        }
-
-        // Handle castling
-        if (move.isCastling()) {
-            Position rookStart = move.getCastlingRookStart();
-            Position rookEnd = move.getCastlingRookEnd();
-
-            // Add null checks and validation
-            Piece rook = board.getPieceAt(rookStart.getX(), rookStart.getY());
-            if (rook != null && rook instanceof Rook) {
-                board.setPieceAt(rookEnd.getX(), rookEnd.getY(), rook);
-                board.setPieceAt(rookStart.getX(), rookStart.getY(), null);
-                ((Rook) rook).setHasMoved(true);
-            }
-        }
-
-        // Handle en passant
-        if (move.isEnPassant()) {
-            Position capturePos = move.getEnPassantCapturePosition();
-            if (capturePos != null) {
-                Piece capturedPawn = board.getPieceAt(capturePos.getX(), capturePos.getY());
-                if (capturedPawn != null) {
-                    board.setPieceAt(capturePos.getX(), capturePos.getY(), null);
-                    move.setCapturedPiece(capturedPawn);
-                }
-            }
-        }
+        // The notation can only tell apart rival pieces in the position before the move
+        int packed = PackedMove.fromMove(move);
+        move.setDisambiguation(San.disambiguation(board, packed));
 
-        // Execute the main move
-        board.setPieceAt(end.getX(), end.getY(), movingPiece);
-        board.setPieceAt(start.getX(), start.getY(), null);
+        // The board handles the rook for castling, the captured pawn for en
+        // passant and the new piece for promotion
+        board.makeMove(packed);
     }
 
     private void updateGameState(Move move) {
-        // Update fifty-move counter
-        if (move.getMovingPiece() instanceof Pawn || move.getCapturedPiece() != null) {
-            movesSincePawnMoveOrCapture = 0;
-        } else {
-            movesSincePawnMoveOrCapture++;
-        }
-
         if (!isInReviewMode) {
             moveHistory.add(move);
             currentMoveIndex = moveHistory.size() - 1;
@@ -357,6 +328,22 @@ public class ChessGame implements GameState {
         lastMove = move;
         board.setLastMove(move);
         switchTurn();
+
+        // Drop any positions from a discarded review branch, then record this one
+        positionCount = currentMoveIndex + 1;
+        recordPosition(isIrreversible(move));
+        invalidatePosition();
+    }
+
+    /**
+     * Sets a committed move's check and checkmate flags from the status of
+     * the position it led to, which the game needs anyway. The move's
+     * notation is built from these flags when it is first read.
+     */
+    private void annotateCheck(Move move) {
+        GameStatus current = getStatus();
+        move.setCheck(statusInCheck);
+        move.setCheckmate(current == GameStatus.CHECKMATE);
     }
 
     private void truncateMoveHistory() {
@@ -367,30 +354,12 @@ public class ChessGame implements GameState {
 
     // Game state checks
     public boolean isCheck() {
-        Position kingPos = findKingPosition(currentPlayer.getColor());
-        if (kingPos == null)
+        int color = currentPlayer.getPieceColor().getIndex();
+        int kingSquare = board.getKingSquare(color);
+        if (kingSquare == Board.NO_SQUARE)
             return false;
 
-        String oppositeColor = currentPlayer.getColor().equals(WHITE) ? BLACK : WHITE;
-
-        // Check all opponent pieces
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null && piece.getColor().equals(oppositeColor)) {
-                    Position piecePos = new Position(i, j);
-                    List<Move> moves = piece.calculateLegalMoves(board, piecePos);
-
-                    // Check if any move can capture the king
-                    for (Move move : moves) {
-                        if (move.getEnd().equals(kingPos)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.isSquareAttacked(kingSquare, 1 - color);
     }
 
     public boolean isCheckmate() {
@@ -404,67 +373,63 @@ public class ChessGame implements GameState {
     }
 
     private boolean canPlayerEscapeCheck() {
-        // Check all pieces of the current player
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null && piece.getColor().equals(currentPlayer.getColor())) {
-                    Position start = new Position(i, j);
-                    List<Move> moves = piece.calculateLegalMoves(board, start);
-
-                    // Try each move to see if it gets out of check
-                    for (Move move : moves) {
-                        Position end = move.getEnd();
-
-                        // Save current board state
-                        Piece capturedPiece = board.getPieceAt(end.getX(), end.getY());
-
-                        // Make the move
-                        board.setPieceAt(end.getX(), end.getY(), piece);
-                        board.setPieceAt(start.getX(), start.getY(), null);
-
-                        // Check if we're still in check after this move
-                        boolean stillInCheck = isCheck();
-
-                        // Restore the board
-                        board.setPieceAt(start.getX(), start.getY(), piece);
-                        board.setPieceAt(end.getX(), end.getY(), capturedPiece);
-
-                        // If this move gets us out of check, return true
-                        if (!stillInCheck) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        // No moves found that escape check
-        return false;
+        // Any legal move at all gets the current player out of check
+        return !getLegalMoveTable().isEmpty();
     }
 
     @Override
     public boolean isGameOver() {
-        return isCheckmate() ||
-                isStalemate() ||
-                hasInsufficientMaterial() ||
-                isFiftyMoveRule() ||
-                isThreefoldRepetition();
+        return getStatus().isGameOver();
+    }
+
+    /**
+     * Gets the status of the current position. It is worked out once per
+     * position, with a single legal move generation, and cached until a move
+     * is made, taken back or navigated.
+     *
+     * @return The game status for the player to move
+     */
+    public GameStatus getStatus() {
+        if (status == null) {
+            status = computeStatus();
+        }
+        return status;
+    }
+
+    private GameStatus computeStatus() {
+        boolean inCheck = isCheck();
+        statusInCheck = inCheck;
+        if (!canPlayerEscapeCheck()) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (hasInsufficientMaterial()) {
+            return GameStatus.INSUFFICIENT_MATERIAL;
+        }
+        if (isFiftyMoveRule()) {
+            return GameStatus.FIFTY_MOVE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.REPETITION;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
     }
 
     public String getGameResult() {
-        if (isCheckmate()) {
-            String winner = currentPlayer.getColor().equals("White") ? "Black" : "White";
-            return winner + " wins by checkmate!";
-        } else if (isStalemate()) {
-            return "Game drawn by stalemate!";
-        } else if (hasInsufficientMaterial()) {
-            return "Game drawn due to insufficient material!";
-        } else if (isFiftyMoveRule()) {
-            return "Game drawn by fifty-move rule!";
-        } else if (isThreefoldRepetition()) {
-            return "Game drawn by threefold repetition!";
+        switch (getStatus()) {
+            case CHECKMATE:
+                String winner = currentPlayer.getPieceColor().opposite().getName();
+                return winner + " wins by checkmate!";
+            case STALEMATE:
+                return "Game drawn by stalemate!";
+            case INSUFFICIENT_MATERIAL:
+                return "Game drawn due to insufficient material!";
+            case FIFTY_MOVE:
+                return "Game drawn by fifty-move rule!";
+            case REPETITION:
+                return "Game drawn by threefold repetition!";
+            default:
+                return "Game in progress";
         }
-        return "Game in progress";
     }
 
     public boolean isStalemate() {
@@ -475,52 +440,28 @@ public class ChessGame implements GameState {
     }
 
     public boolean hasInsufficientMaterial() {
-        List<Piece> remainingPieces = new ArrayList<>();
-
-        // Collect all remaining pieces
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null) {
-                    remainingPieces.add(piece);
-                }
-            }
-        }
+        int pieceCount = board.getPieceCount(Piece.WHITE) + board.getPieceCount(Piece.BLACK);
 
         // King vs King
-        if (remainingPieces.size() == 2) {
+        if (pieceCount == 2) {
             return true;
         }
 
+        long minorPieces = 0L;
+        long bishops = 0L;
+        for (int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            minorPieces |= board.getPieceBitboard(color, Piece.KNIGHT) | board.getPieceBitboard(color, Piece.BISHOP);
+            bishops |= board.getPieceBitboard(color, Piece.BISHOP);
+        }
+
         // King and Bishop/Knight vs King
-        if (remainingPieces.size() == 3) {
-            boolean hasOnlyOneMinorPiece = remainingPieces.stream()
-                    .filter(p -> !(p instanceof King))
-                    .allMatch(p -> p instanceof Bishop || p instanceof Knight);
-            return hasOnlyOneMinorPiece;
+        if (pieceCount == 3) {
+            return Long.bitCount(minorPieces) == 1;
         }
 
         // King and Bishop vs King and Bishop (same colored squares)
-        if (remainingPieces.size() == 4) {
-            List<Piece> bishops = remainingPieces.stream()
-                    .filter(p -> p instanceof Bishop)
-                    .toList();
-
-            if (bishops.size() == 2) {
-                // Check if bishops are on same colored squares
-                boolean sameBishopColor = true;
-                for (int i = 0; i < 8 && sameBishopColor; i++) {
-                    for (int j = 0; j < 8; j++) {
-                        Piece piece = board.getPieceAt(i, j);
-                        if (piece instanceof Bishop) {
-                            // Square color is determined by sum of coordinates being even/odd
-                            boolean isLightSquare = (i + j) % 2 == 0;
-                            sameBishopColor = sameBishopColor && isLightSquare;
-                        }
-                    }
-                }
-                return sameBishopColor;
-            }
+        if (pieceCount == 4 && Long.bitCount(bishops) == 2) {
+            return (bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & Bitboards.DARK_SQUARES) == 0;
         }
 
         return false;
@@ -534,6 +475,8 @@ public class ChessGame implements GameState {
         undoLastMove();
         currentMoveIndex--;
         isInReviewMode = true;
+        popPosition();
+        invalidatePosition();
         return true;
     }
 
@@ -543,7 +486,9 @@ public class ChessGame implements GameState {
 
         currentMoveIndex++;
         redoMove(moveHistory.get(currentMoveIndex));
+        recordPosition(isIrreversible(moveHistory.get(currentMoveIndex)));
         isInReviewMode = (currentMoveIndex < moveHistory.size() - 1);
+        invalidatePosition();
         return true;
     }
 
@@ -552,18 +497,6 @@ public class ChessGame implements GameState {
         currentPlayer = (currentPlayer == whitePlayer) ? blackPlayer : whitePlayer;
     }
 
-    private Position findKingPosition(String color) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece instanceof King && piece.getColor().equals(color)) {
-                    return new Position(i, j);
-                }
-            }
-        }
-        return null;
-    }
-
     // Getters
     public Player getCurrentPlayer() {
         return currentPlayer;
@@ -606,37 +539,8 @@ public class ChessGame implements GameState {
     }
 
     private void undoLastMove() {
-        Move moveToUndo = moveHistory.get(currentMoveIndex);
-
-        // Handle promotion
-        if (moveToUndo.isPromotion()) {
-            // Restore the pawn to its original position
-            board.setPieceAt(moveToUndo.getStart().getX(), moveToUndo.getStart().getY(), moveToUndo.getMovingPiece());
-            board.setPieceAt(moveToUndo.getEnd().getX(), moveToUndo.getEnd().getY(), moveToUndo.getCapturedPiece());
-        } else {
-            // Restore the moving piece to its original position
-            board.setPieceAt(moveToUndo.getStart().getX(), moveToUndo.getStart().getY(), moveToUndo.getMovingPiece());
-            board.setPieceAt(moveToUndo.getEnd().getX(), moveToUndo.getEnd().getY(), moveToUndo.getCapturedPiece());
-        }
-
-        // Handle special cases
-        if (moveToUndo.isCastling()) {
-            // Undo rook movement for castling
-            Position rookStart = moveToUndo.getCastlingRookStart();
-            Position rookEnd = moveToUndo.getCastlingRookEnd();
-            Piece rook = board.getPieceAt(rookEnd.getX(), rookEnd.getY());
-            board.setPieceAt(rookStart.getX(), rookStart.getY(), rook);
-            board.setPieceAt(rookEnd.getX(), rookEnd.getY(), null);
-        }
-
-        // Handle en passant
-        if (moveToUndo.isEnPassant()) {
-            // Restore the captured pawn
-            Position capturePos = moveToUndo.getEnPassantCapturePosition();
-            if (capturePos != null) {
-                board.setPieceAt(capturePos.getX(), capturePos.getY(), moveToUndo.getCapturedPiece());
-            }
-        }
+        // The board restores castling rights, en passant and its hash itself
+        board.unmakeMove();
 
         // Update game state
         lastMove = currentMoveIndex > 0 ? moveHistory.get(currentMoveIndex - 1) : null;
@@ -644,78 +548,8 @@ public class ChessGame implements GameState {
         switchTurn();
     }
 
-    private void undoMove(Move move) {
-        Position start = move.getStart();
-        Position end = move.getEnd();
-        Piece movingPiece = move.getMovingPiece();
-        Piece capturedPiece = move.getCapturedPiece();
-
-        // Handle promotion
-        if (move.isPromotion()) {
-            // Restore the pawn to its original position
-            board.setPieceAt(start.getX(), start.getY(), movingPiece);
-            board.setPieceAt(end.getX(), end.getY(), capturedPiece);
-        } else {
-            // Restore the captured piece
-            board.setPieceAt(end.getX(), end.getY(), capturedPiece);
-            board.setPieceAt(start.getX(), start.getY(), movingPiece);
-        }
-
-        // Handle castling
-        if (move.isCastling()) {
-            Position rookStart = move.getCastlingRookStart();
-            Position rookEnd = move.getCastlingRookEnd();
-            Piece rook = board.getPieceAt(rookEnd.getX(), rookEnd.getY());
-            board.setPieceAt(rookStart.getX(), rookStart.getY(), rook);
-            board.setPieceAt(rookEnd.getX(), rookEnd.getY(), null);
-        }
-
-        // Handle en passant
-        if (move.isEnPassant()) {
-            Position capturePos = move.getEnPassantCapturePosition();
-            if (capturePos != null) {
-                Piece capturedPawn = move.getCapturedPiece();
-                board.setPieceAt(capturePos.getX(), capturePos.getY(), capturedPawn);
-            }
-        }
-
-        // Update piece's moved status if it's a King or Rook
-        if (movingPiece instanceof King) {
-            ((King) movingPiece).setHasMoved(false);
-        } else if (movingPiece instanceof Rook) {
-            ((Rook) movingPiece).setHasMoved(false);
-        }
-    }
-
     private void redoMove(Move move) {
-        // Handle promotion
-        if (move.isPromotion()) {
-            board.setPieceAt(move.getEnd().getX(), move.getEnd().getY(), move.getPromotedPiece());
-            board.setPieceAt(move.getStart().getX(), move.getStart().getY(), null);
-        } else {
-            // Move the piece to its destination
-            board.setPieceAt(move.getEnd().getX(), move.getEnd().getY(), move.getMovingPiece());
-            board.setPieceAt(move.getStart().getX(), move.getStart().getY(), null);
-        }
-
-        // Handle special cases
-        if (move.isCastling()) {
-            // Move the rook for castling
-            Position rookStart = move.getCastlingRookStart();
-            Position rookEnd = move.getCastlingRookEnd();
-            Piece rook = board.getPieceAt(rookStart.getX(), rookStart.getY());
-            board.setPieceAt(rookEnd.getX(), rookEnd.getY(), rook);
-            board.setPieceAt(rookStart.getX(), rookStart.getY(), null);
-        }
-
-        // Handle en passant
-        if (move.isEnPassant()) {
-            Position capturePos = move.getEnPassantCapturePosition();
-            if (capturePos != null) {
-                // Remove the captured pawn
-                board.setPieceAt(capturePos.getX(), capturePos.getY(), null);
-            }
-        }
+        executeMove(move);
 
         // Update game state
         lastMove = move;
@@ -735,19 +569,86 @@ public class ChessGame implements GameState {
         return moveHistory.get(currentMoveIndex);
     }
 
+    /**
+     * Starts a new game from the position in a FEN string, clearing the move
+     * history. Side to move, castling rights, the en passant square and both
+     * move counters are taken from the FEN.
+     *
+     * @param fen The FEN string
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public void loadFen(String fen) {
+        // Parse before touching the game, so an invalid FEN changes nothing
+        startFen = Fen.format(Fen.parse(fen));
+        moveHistory.clear();
+        reset();
+    }
+
+    /**
+     * Starts a new game from the position in a FEN string and plays a list
+     * of moves through the game's own move validation, as if they had been
+     * entered one by one.
+     *
+     * @param fen   The FEN string of the starting position
+     * @param moves The moves as {@link PackedMove} values
+     * @return The number of moves played; less than the size of the list if
+     *         the game rejected a move
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public int replay(String fen, MoveList moves) {
+        loadFen(fen);
+        for (int i = 0; i < moves.size(); i++) {
+            Move move = PackedMove.toMove(moves.get(i), board);
+            boolean played = move.isPromotion() ? movePiece(move) : movePiece(move.getStart(), move.getEnd());
+            if (!played) {
+                return i;
+            }
+        }
+        return moves.size();
+    }
+
+    /**
+     * Gets the current position as a FEN string.
+     *
+     * @return The FEN string
+     */
+    public String toFen() {
+        return Fen.format(board);
+    }
+
+    /**
+     * Gets the position the game started from as a FEN string.
+     *
+     * @return The FEN string of the starting position
+     */
+    public String getStartFen() {
+        return startFen != null ? startFen : Fen.START_POSITION;
+    }
+
+    // Puts the starting position on the board and gives the move to its side
+    private void setUpStartPosition() {
+        if (startFen == null) {
+            board.initialize();
+        } else {
+            Fen.load(board, startFen, 0, startFen.length());
+        }
+        currentPlayer = board.getSideToMove() == Piece.WHITE ? whitePlayer : blackPlayer;
+    }
+
     /**
      * Resets the game to its initial state
      */
     public void reset() {
         // Reset the board to initial position
-        board.initialize();
+        setUpStartPosition();
 
         // Reset game state
-        currentPlayer = whitePlayer;
         lastMove = null;
         board.setLastMove(null);
         currentMoveIndex = -1;
-        movesSincePawnMoveOrCapture = 0;
+        positionCount = 0;
+        recordPosition(true);
+        invalidatePosition();
 
         // Set review mode if we have move history
         // This prevents making new moves when reviewing history
@@ -768,12 +669,13 @@ public class ChessGame implements GameState {
         int targetIndex = currentMoveIndex;
 
         // Reset the board
-        board.initialize();
-        currentPlayer = whitePlayer;
+        setUpStartPosition();
         lastMove = null;
         board.setLastMove(null);
         currentMoveIndex = -1;
-        movesSincePawnMoveOrCapture = 0;
+        positionCount = 0;
+        recordPosition(true);
+        invalidatePosition();
 
         // Replay all moves up to the target index
         for (int i = 0; i <= targetIndex; i++) {
@@ -782,6 +684,7 @@ public class ChessGame implements GameState {
             lastMove = move;
             board.setLastMove(move);
             switchTurn();
+            recordPosition(isIrreversible(move));
         }
 
         // Set the current move index back to the target
@@ -792,119 +695,56 @@ public class ChessGame implements GameState {
     }
 
     public boolean isFiftyMoveRule() {
-        return movesSincePawnMoveOrCapture >= 100; // 50 moves by each player = 100 half-moves
-    }
-
-    private String getPositionKey() {
-        StringBuilder key = new StringBuilder();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null) {
-                    key.append(piece.getClass().getSimpleName())
-                            .append(piece.getColor())
-                            .append(i)
-                            .append(j);
-                }
-            }
-        }
-        key.append(currentPlayer.getColor()); // Include current player to move
-        return key.toString();
+        return board.getHalfmoveClock() >= 100; // 50 moves by each player = 100 half-moves
     }
 
     public boolean isThreefoldRepetition() {
-        Map<String, Integer> positionCount = new HashMap<>();
-
-        // Count initial position
-        String currentPos = getPositionKey();
-        positionCount.put(currentPos, 1);
-
-        // Replay all moves and count positions
-        Board tempBoard = board.copy();
-        for (int i = 0; i < moveHistory.size(); i++) {
-            Move move = moveHistory.get(i);
-
-            // Apply the move to get the position after this move
-            applyMove(tempBoard, move);
-
-            // Get position key and count it
-            String position = getPositionKeyForBoard(tempBoard);
-            positionCount.merge(position, 1, Integer::sum);
-
-            if (positionCount.get(position) >= 3) {
+        int current = positionCount - 1;
+        long position = positionHashes[current];
+        int occurrences = 1;
+
+        // Positions before the last pawn move or capture can never recur, and
+        // only every other ply has the same side to move
+        for (int i = current - 2; i >= irreversiblePlies[current]; i -= 2) {
+            if (positionHashes[i] == position && ++occurrences >= 3) {
                 return true;
             }
         }
-
         return false;
     }
 
-    private void applyMove(Board board, Move move) {
-        // Apply the move to the temporary board
-        Piece movingPiece = board.getPieceAt(move.getStart().getX(), move.getStart().getY());
-        board.setPieceAt(move.getEnd().getX(), move.getEnd().getY(), movingPiece);
-        board.setPieceAt(move.getStart().getX(), move.getStart().getY(), null);
-
-        // Handle castling if necessary
-        if (move.isCastling()) {
-            Position rookStart = move.getCastlingRookStart();
-            Position rookEnd = move.getCastlingRookEnd();
-            Piece rook = board.getPieceAt(rookStart.getX(), rookStart.getY());
-            board.setPieceAt(rookEnd.getX(), rookEnd.getY(), rook);
-            board.setPieceAt(rookStart.getX(), rookStart.getY(), null);
-        }
-    }
-
-    private String getPositionKeyForBoard(Board board) {
-        StringBuilder key = new StringBuilder();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null) {
-                    key.append(piece.getClass().getSimpleName())
-                            .append(piece.getColor())
-                            .append(i)
-                            .append(j);
-                }
-            }
+    /**
+     * Pushes the board's current hash onto the position history.
+     *
+     * @param irreversible true if the move that led here was a pawn move or
+     *                     capture (or this is the starting position)
+     */
+    private void recordPosition(boolean irreversible) {
+        if (positionCount == positionHashes.length) {
+            positionHashes = Arrays.copyOf(positionHashes, positionCount * 2);
+            irreversiblePlies = Arrays.copyOf(irreversiblePlies, positionCount * 2);
         }
-        // Include whose turn it is
-        key.append(currentPlayer.getColor());
-        return key.toString();
+        positionHashes[positionCount] = board.getZobristKey();
+        irreversiblePlies[positionCount] = irreversible ? positionCount : irreversiblePlies[positionCount - 1];
+        positionCount++;
+    }
+
+    private void popPosition() {
+        positionCount--;
+    }
+
+    private static boolean isIrreversible(Move move) {
+        return move.getMovingPiece().getType() == Piece.PAWN || move.getCapturedPiece() != null;
     }
 
     public int evaluatePosition() {
         // Simple material evaluation
         int evaluation = 0;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                if (piece != null) {
-                    int value = getPieceValue(piece);
-                    if (piece.getColor().equals("White")) {
-                        evaluation += value;
-                    } else {
-                        evaluation -= value;
-                    }
-                }
-            }
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            int value = PIECE_VALUES[type];
+            evaluation += value * Long.bitCount(board.getPieceBitboard(Piece.WHITE, type));
+            evaluation -= value * Long.bitCount(board.getPieceBitboard(Piece.BLACK, type));
         }
         return evaluation;
     }
-
-    private int getPieceValue(Piece piece) {
-        if (piece instanceof Pawn)
-            return 1;
-        if (piece instanceof Knight)
-            return 3;
-        if (piece instanceof Bishop)
-            return 3;
-        if (piece instanceof Rook)
-            return 5;
-        if (piece instanceof Queen)
-            return 9;
-        if (piece instanceof King)
-            return 0;
-        return 0;
-    }
 }
\ No newline at end of file
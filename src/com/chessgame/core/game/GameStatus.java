@@ -0,0 +1,59 @@
+package com.chessgame.core.game;
+
+/**
+ * Enum representing the state of a game after the latest move, as seen by the
+ * player to move.
+ */
+public enum GameStatus {
+    /** The game is in progress and the player to move is not in check */
+    ONGOING,
+
+    /** The game is in progress and the player to move is in check */
+    CHECK,
+
+    /** The player to move is checkmated and has lost */
+    CHECKMATE,
+
+    /** The player to move has no legal move but is not in check */
+    STALEMATE,
+
+    /** Neither side has enough material left to checkmate */
+    INSUFFICIENT_MATERIAL,
+
+    /** Fifty moves by each side without a pawn move or capture */
+    FIFTY_MOVE,
+
+    /** The same position has occurred three times */
+    REPETITION;
+
+    /**
+     * Checks if the game has ended.
+     *
+     * @return true for checkmate and every kind of draw
+     */
+    public boolean isGameOver() {
+        return this != ONGOING && this != CHECK;
+    }
+
+    /**
+     * Checks if the game has ended in a draw.
+     *
+     * @return true for stalemate, insufficient material, the fifty-move rule
+     *         and repetition
+     */
+    public boolean isDraw() {
+        return isGameOver() && this != CHECKMATE;
+    }
+
+    /**
+     * Checks if the status says the player to move is in check. A draw by
+     * insufficient material, the fifty-move rule or repetition is reported
+     * as such even when the player to move is in check; ask
+     * {@link ChessGame#isCheck()} for the position itself.
+     *
+     * @return true for {@link #CHECK} and {@link #CHECKMATE}
+     */
+    public boolean isCheck() {
+        return this == CHECK || this == CHECKMATE;
+    }
+}
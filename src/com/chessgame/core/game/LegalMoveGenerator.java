@@ -0,0 +1,280 @@
+package com.chessgame.core.game;
+
+import com.chessgame.core.board.Attacks;
+import com.chessgame.core.board.Bitboards;
+import com.chessgame.core.board.Board;
+import com.chessgame.core.pieces.Piece;
+
+/**
+ * Generates only the legal moves of the side to move.
+ * <p>
+ * Instead of generating pseudo-legal moves and testing each one by making it
+ * and looking for check, the generator first works out which enemy pieces
+ * give check and which friendly pieces are pinned to the king:
+ * <ul>
+ * <li>in double check only king moves are generated;</li>
+ * <li>in single check other pieces may only capture the checker or block
+ * the checking ray;</li>
+ * <li>a pinned piece may only move along the line through its king and
+ * the pinning piece;</li>
+ * <li>the king may only step to squares the enemy does not attack once the
+ * king itself no longer blocks a slider.</li>
+ * </ul>
+ * En passant is the one move that can expose the king by removing two pieces
+ * from a rank, so it is verified against the resulting occupancy directly.
+ */
+public final class LegalMoveGenerator {
+    private LegalMoveGenerator() {
+    }
+
+    /**
+     * Appends every legal move of the side to move to the list.
+     *
+     * @param board The board to generate moves for
+     * @param moves The list to append packed moves to
+     */
+    public static void generate(Board board, MoveList moves) {
+        int us = board.getSideToMove();
+        int them = 1 - us;
+        long own = board.getColorBitboard(us);
+        long enemy = board.getColorBitboard(them);
+        long occupied = board.getOccupiedBitboard();
+        int kingSquare = board.getKingSquare(us);
+        if (kingSquare == Board.NO_SQUARE) {
+            return;
+        }
+        long king = Bitboards.bit(kingSquare);
+
+        long checkers = attackers(board, kingSquare, them, occupied);
+
+        // King steps, with the king lifted off the board so it can't hide behind itself
+        long kingTargets = Attacks.kingAttacks(kingSquare) & ~own;
+        long withoutKing = occupied ^ king;
+        while (kingTargets != 0) {
+            int to = Bitboards.lowestSquare(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (attackers(board, to, them, withoutKing) == 0) {
+                moves.add(PackedMove.encode(kingSquare, to, captureFlag(enemy, to)));
+            }
+        }
+
+        // In double check only the king can move
+        if (Long.bitCount(checkers) > 1) {
+            return;
+        }
+
+        // Squares that resolve a single check: capturing the checker or blocking it
+        long checkMask = -1L;
+        if (checkers != 0) {
+            int checker = Bitboards.lowestSquare(checkers);
+            checkMask = checkers | Attacks.between(kingSquare, checker);
+        } else {
+            addCastlingMoves(board, us, kingSquare, occupied, moves);
+        }
+
+        long pinned = pinnedPieces(board, us, kingSquare, occupied);
+
+        addPawnMoves(board, us, kingSquare, checkMask, pinned, moves);
+
+        long pieces = own & ~king & ~board.getPieceBitboard(us, Piece.PAWN);
+        while (pieces != 0) {
+            int from = Bitboards.lowestSquare(pieces);
+            pieces &= pieces - 1;
+            long targets;
+            switch (Piece.typeOf(board.getPieceCode(from))) {
+                case Piece.KNIGHT:
+                    targets = Attacks.knightAttacks(from);
+                    break;
+                case Piece.BISHOP:
+                    targets = Attacks.bishopAttacks(from, occupied);
+                    break;
+                case Piece.ROOK:
+                    targets = Attacks.rookAttacks(from, occupied);
+                    break;
+                default:
+                    targets = Attacks.queenAttacks(from, occupied);
+                    break;
+            }
+            targets &= ~own & checkMask;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+            while (targets != 0) {
+                int to = Bitboards.lowestSquare(targets);
+                targets &= targets - 1;
+                moves.add(PackedMove.encode(from, to, captureFlag(enemy, to)));
+            }
+        }
+    }
+
+    /**
+     * Checks whether a move of the side to move is legal, given that it
+     * already follows its piece's movement pattern: the board is replayed on
+     * the occupancy bitboard and the king is tested for attack, without
+     * making the move. Castling is checked in full.
+     *
+     * @param board The board the move is played on
+     * @param move  The packed move
+     * @return true if the move does not leave the king in check
+     */
+    static boolean isLegal(Board board, int move) {
+        int us = board.getSideToMove();
+        int them = 1 - us;
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        long occupied = board.getOccupiedBitboard();
+
+        if (PackedMove.isCastling(move)) {
+            boolean kingSide = to > from;
+            int right = us == Piece.WHITE
+                    ? (kingSide ? Board.WHITE_KINGSIDE : Board.WHITE_QUEENSIDE)
+                    : (kingSide ? Board.BLACK_KINGSIDE : Board.BLACK_QUEENSIDE);
+            int rookSquare = kingSide ? from + 3 : from - 4;
+            int step = kingSide ? 1 : -1;
+            return (board.getCastlingRights() & right) != 0
+                    && (board.getPieceBitboard(us, Piece.ROOK) & Bitboards.bit(rookSquare)) != 0
+                    && (Attacks.between(from, rookSquare) & occupied) == 0
+                    && !board.isSquareAttacked(from, them)
+                    && !board.isSquareAttacked(from + step, them)
+                    && !board.isSquareAttacked(to, them);
+        }
+
+        int kingSquare = board.getKingSquare(us);
+        if (from == kingSquare) {
+            return attackers(board, to, them, occupied ^ Bitboards.bit(from)) == 0;
+        }
+
+        // Lift the moving piece and whatever it captures, then look for any attack on the king
+        long captured = Bitboards.bit(PackedMove.isEnPassant(move) ? (from & ~7) | (to & 7) : to);
+        long after = (occupied & ~Bitboards.bit(from) & ~captured) | Bitboards.bit(to);
+        return (attackers(board, kingSquare, them, after) & ~captured) == 0;
+    }
+
+    /**
+     * Gets all pieces of one color that attack a square, given an occupancy.
+     */
+    private static long attackers(Board board, int square, int color, long occupied) {
+        long queens = board.getPieceBitboard(color, Piece.QUEEN);
+        return (Attacks.knightAttacks(square) & board.getPieceBitboard(color, Piece.KNIGHT))
+                | (Attacks.pawnAttacks(1 - color, square) & board.getPieceBitboard(color, Piece.PAWN))
+                | (Attacks.kingAttacks(square) & board.getPieceBitboard(color, Piece.KING))
+                | (Attacks.rookAttacks(square, occupied) & (board.getPieceBitboard(color, Piece.ROOK) | queens))
+                | (Attacks.bishopAttacks(square, occupied) & (board.getPieceBitboard(color, Piece.BISHOP) | queens));
+    }
+
+    /**
+     * Finds friendly pieces that are the only blocker between the king and an
+     * enemy slider aimed at it.
+     */
+    private static long pinnedPieces(Board board, int us, int kingSquare, long occupied) {
+        int them = 1 - us;
+        long enemy = board.getColorBitboard(them);
+        long queens = board.getPieceBitboard(them, Piece.QUEEN);
+        long snipers = (Attacks.rookAttacks(kingSquare, enemy) & (board.getPieceBitboard(them, Piece.ROOK) | queens))
+                | (Attacks.bishopAttacks(kingSquare, enemy) & (board.getPieceBitboard(them, Piece.BISHOP) | queens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Bitboards.lowestSquare(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(kingSquare, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.getColorBitboard(us);
+            }
+        }
+        return pinned;
+    }
+
+    private static void addPawnMoves(Board board, int us, int kingSquare, long checkMask, long pinned,
+            MoveList moves) {
+        int them = 1 - us;
+        long enemy = board.getColorBitboard(them);
+        long occupied = board.getOccupiedBitboard();
+        int direction = us == Piece.WHITE ? 8 : -8;
+        int startRow = us == Piece.WHITE ? 1 : 6;
+        int enPassantSquare = board.getEnPassantSquare();
+
+        long pawns = board.getPieceBitboard(us, Piece.PAWN);
+        while (pawns != 0) {
+            int from = Bitboards.lowestSquare(pawns);
+            pawns &= pawns - 1;
+            long allowed = checkMask;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                allowed &= Attacks.line(kingSquare, from);
+            }
+
+            // Pushes
+            int to = from + direction;
+            if ((occupied & Bitboards.bit(to)) == 0) {
+                if ((allowed & Bitboards.bit(to)) != 0) {
+                    addPawnMove(moves, from, to, 0);
+                }
+                int doubleTo = to + direction;
+                if (Bitboards.rankOf(from) == startRow && (occupied & Bitboards.bit(doubleTo)) == 0
+                        && (allowed & Bitboards.bit(doubleTo)) != 0) {
+                    moves.add(PackedMove.encode(from, doubleTo, PackedMove.DOUBLE_PUSH));
+                }
+            }
+
+            // Captures
+            long captures = Attacks.pawnAttacks(us, from) & enemy & allowed;
+            while (captures != 0) {
+                int captureSquare = Bitboards.lowestSquare(captures);
+                captures &= captures - 1;
+                addPawnMove(moves, from, captureSquare, PackedMove.CAPTURE);
+            }
+
+            // En passant: replay the capture on the occupancy and look for any attack on the king
+            if (enPassantSquare != Board.NO_SQUARE
+                    && (Attacks.pawnAttacks(us, from) & Bitboards.bit(enPassantSquare)) != 0) {
+                long captured = Bitboards.bit(enPassantSquare - direction);
+                long after = (occupied ^ Bitboards.bit(from) ^ captured) | Bitboards.bit(enPassantSquare);
+                if ((attackers(board, kingSquare, them, after) & ~captured) == 0) {
+                    moves.add(PackedMove.encode(from, enPassantSquare, PackedMove.EN_PASSANT));
+                }
+            }
+        }
+    }
+
+    private static void addPawnMove(MoveList moves, int from, int to, int flags) {
+        int rank = Bitboards.rankOf(to);
+        if (rank == 0 || rank == 7) {
+            moves.add(PackedMove.encode(from, to, flags, Piece.QUEEN));
+            moves.add(PackedMove.encode(from, to, flags, Piece.ROOK));
+            moves.add(PackedMove.encode(from, to, flags, Piece.BISHOP));
+            moves.add(PackedMove.encode(from, to, flags, Piece.KNIGHT));
+        } else {
+            moves.add(PackedMove.encode(from, to, flags));
+        }
+    }
+
+    private static void addCastlingMoves(Board board, int us, int kingSquare, long occupied, MoveList moves) {
+        int rights = board.getCastlingRights();
+        int kingSideRight = us == Piece.WHITE ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+        int queenSideRight = us == Piece.WHITE ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+        int homeSquare = us == Piece.WHITE ? 4 : 60;
+        if (kingSquare != homeSquare || (rights & (kingSideRight | queenSideRight)) == 0) {
+            return;
+        }
+        long rooks = board.getPieceBitboard(us, Piece.ROOK);
+        int them = 1 - us;
+
+        // The king is not in check here, so only the squares it crosses and lands on matter
+        if ((rights & kingSideRight) != 0 && (rooks & Bitboards.bit(kingSquare + 3)) != 0
+                && (Attacks.between(kingSquare, kingSquare + 3) & occupied) == 0
+                && !board.isSquareAttacked(kingSquare + 1, them)
+                && !board.isSquareAttacked(kingSquare + 2, them)) {
+            moves.add(PackedMove.encode(kingSquare, kingSquare + 2, PackedMove.CASTLING));
+        }
+        if ((rights & queenSideRight) != 0 && (rooks & Bitboards.bit(kingSquare - 4)) != 0
+                && (Attacks.between(kingSquare, kingSquare - 4) & occupied) == 0
+                && !board.isSquareAttacked(kingSquare - 1, them)
+                && !board.isSquareAttacked(kingSquare - 2, them)) {
+            moves.add(PackedMove.encode(kingSquare, kingSquare - 2, PackedMove.CASTLING));
+        }
+    }
+
+    private static int captureFlag(long enemy, int to) {
+        return (enemy & Bitboards.bit(to)) != 0 ? PackedMove.CAPTURE : 0;
+    }
+}
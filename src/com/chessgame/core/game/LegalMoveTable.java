@@ -0,0 +1,107 @@
+package com.chessgame.core.game;
+
+import com.chessgame.core.board.Board;
+
+import java.util.Arrays;
+
+/**
+ * The legal moves of one position, grouped by origin square.
+ * The table is filled with a single {@link LegalMoveGenerator} pass and then
+ * answers "which moves start here" and "is this move legal" without
+ * generating again, until the owner refills it for the next position.
+ */
+public class LegalMoveTable {
+    private final MoveList generated = new MoveList();
+
+    /** The packed moves, sorted by origin square */
+    private int[] moves = new int[256];
+
+    /** Index of the first move of each origin square; entry 64 is the total */
+    private final int[] offsets = new int[65];
+
+    /** Next free slot of each origin square while filling */
+    private final int[] cursors = new int[64];
+
+    /**
+     * Refills the table with the legal moves of the side to move.
+     *
+     * @param board The position to generate moves for
+     */
+    public void update(Board board) {
+        generated.clear();
+        LegalMoveGenerator.generate(board, generated);
+        int size = generated.size();
+        if (moves.length < size) {
+            moves = new int[size];
+        }
+
+        // Counting sort on the origin square, keeping generation order per square
+        Arrays.fill(offsets, 0);
+        for (int i = 0; i < size; i++) {
+            offsets[PackedMove.getFrom(generated.get(i)) + 1]++;
+        }
+        for (int square = 0; square < 64; square++) {
+            offsets[square + 1] += offsets[square];
+        }
+        System.arraycopy(offsets, 0, cursors, 0, 64);
+        for (int i = 0; i < size; i++) {
+            int move = generated.get(i);
+            moves[cursors[PackedMove.getFrom(move)]++] = move;
+        }
+    }
+
+    /**
+     * Gets the total number of legal moves.
+     *
+     * @return The number of moves
+     */
+    public int size() {
+        return offsets[64];
+    }
+
+    /**
+     * Checks whether the side to move has no legal move.
+     *
+     * @return true if there are no moves
+     */
+    public boolean isEmpty() {
+        return offsets[64] == 0;
+    }
+
+    /**
+     * Gets the number of legal moves starting on a square.
+     *
+     * @param from The origin square index (0-63)
+     * @return The number of moves
+     */
+    public int count(int from) {
+        return offsets[from + 1] - offsets[from];
+    }
+
+    /**
+     * Gets one of the legal moves starting on a square.
+     *
+     * @param from  The origin square index (0-63)
+     * @param index The index (0 to count(from) - 1)
+     * @return The packed move
+     */
+    public int get(int from, int index) {
+        return moves[offsets[from] + index];
+    }
+
+    /**
+     * Finds the first legal move between two squares.
+     *
+     * @param from The origin square index (0-63)
+     * @param to   The destination square index (0-63)
+     * @return The first matching packed move, or {@link PackedMove#NONE}
+     */
+    public int find(int from, int to) {
+        for (int i = offsets[from]; i < offsets[from + 1]; i++) {
+            if (PackedMove.getTo(moves[i]) == to) {
+                return moves[i];
+            }
+        }
+        return PackedMove.NONE;
+    }
+}
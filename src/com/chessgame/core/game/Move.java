@@ -1,5 +1,6 @@
 package com.chessgame.core.game;
 
+import com.chessgame.core.board.Bitboards;
 import com.chessgame.core.board.Position;
 import com.chessgame.core.pieces.Piece;
 
@@ -54,6 +55,9 @@ public class Move {
     /** Flag indicating if this move puts the opponent in checkmate */
     private boolean isCheckmate;
 
+    /** Which parts of the origin square the notation must name, as San flags */
+    private int disambiguation;
+
     /**
      * Creates a new move from the start position to the end position.
      *
@@ -124,13 +128,41 @@ public class Move {
 
     /**
      * Gets the algebraic notation for this move.
+     * Unless it was set explicitly, the notation is built on first use from
+     * the move's pieces and its check and checkmate flags, so the flags must
+     * be final by then.
      *
      * @return The move notation
      */
     public String getNotation() {
+        if (notation == null && movingPiece != null) {
+            notation = buildNotation();
+        }
         return notation;
     }
 
+    private String buildNotation() {
+        StringBuilder text = new StringBuilder(8);
+        boolean isPawn = movingPiece.getType() == Piece.PAWN;
+        boolean capture = capturedPiece != null || (isPawn && start.getY() != end.getY());
+        int promotion = isPromotion && promotedPiece != null ? promotedPiece.getType() : 0;
+        char suffix = isCheckmate ? '#' : isCheck ? '+' : 0;
+        San.append(text, movingPiece.getType(), Bitboards.square(start.getX(), start.getY()),
+                Bitboards.square(end.getX(), end.getY()), capture, isCastling, promotion, disambiguation, suffix);
+        return text.toString();
+    }
+
+    /**
+     * Sets which parts of the origin square the notation must name to tell
+     * this move apart from other moves of the same piece type to the same
+     * square. Must be set before the notation is first read.
+     *
+     * @param disambiguation {@link San#FILE} and/or {@link San#RANK}, or 0
+     */
+    void setDisambiguation(int disambiguation) {
+        this.disambiguation = disambiguation;
+    }
+
     /**
      * Sets the algebraic notation for this move.
      *
@@ -0,0 +1,113 @@
+package com.chessgame.core.game;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, growable buffer of packed moves.
+ * Move generators append {@link PackedMove} values to it; callers clear and
+ * refill the same list instead of allocating a new collection per position.
+ */
+public class MoveList {
+    /** Enough room for the largest number of moves in any legal position */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** The packed moves */
+    private int[] moves;
+
+    /** Number of moves currently in the list */
+    private int size;
+
+    /**
+     * Creates an empty move list.
+     */
+    public MoveList() {
+        this.moves = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Appends a packed move.
+     *
+     * @param move The packed move to add
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Gets the packed move at the given index.
+     *
+     * @param index The index (0 to size - 1)
+     * @return The packed move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Gets the number of moves in the list.
+     *
+     * @return The number of moves
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the list is empty.
+     *
+     * @return true if the list contains no moves
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all moves, keeping the buffer for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Finds the first move between two squares.
+     *
+     * @param from The origin square index (0-63)
+     * @param to   The destination square index (0-63)
+     * @return The first matching packed move, or {@link PackedMove#NONE}
+     */
+    public int find(int from, int to) {
+        for (int i = 0; i < size; i++) {
+            int move = moves[i];
+            if (PackedMove.getFrom(move) == from && PackedMove.getTo(move) == to) {
+                return move;
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Sorts the moves by their packed value, giving an order that depends
+     * only on the position and not on how the moves were generated.
+     */
+    public void sort() {
+        Arrays.sort(moves, 0, size);
+    }
+
+    /**
+     * Finds a packed move in the list.
+     *
+     * @param move The packed move
+     * @return Its index, or -1 if the list does not contain it
+     */
+    public int indexOf(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.chessgame.core.game;
+
+import com.chessgame.core.board.Bitboards;
+import com.chessgame.core.board.Board;
+import com.chessgame.core.pieces.Piece;
+
+/**
+ * Encodes a chess move into a single {@code int}.
+ * <p>
+ * Layout, from the least significant bit:
+ * <ul>
+ * <li>bits 0-5: origin square index (0 = a1, 63 = h8)</li>
+ * <li>bits 6-11: destination square index</li>
+ * <li>bits 12-15: flags ({@link #CAPTURE}, {@link #DOUBLE_PUSH},
+ * {@link #EN_PASSANT}, {@link #CASTLING})</li>
+ * <li>bits 16-18: promotion piece type code, or 0 for none</li>
+ * </ul>
+ * Packed moves carry no references, so move generators can fill an
+ * {@code int[]} buffer without allocating. A full {@link Move} can be built
+ * from a packed move with {@link #toMove(int, Board)} when one is needed.
+ */
+public final class PackedMove {
+    /** Value that never encodes a real move */
+    public static final int NONE = 0;
+
+    /** Flag set when the move captures a piece */
+    public static final int CAPTURE = 1;
+
+    /** Flag set when a pawn advances two squares */
+    public static final int DOUBLE_PUSH = 2;
+
+    /** Flag set when a pawn captures en passant */
+    public static final int EN_PASSANT = 4;
+
+    /** Flag set when the king castles */
+    public static final int CASTLING = 8;
+
+    private PackedMove() {
+    }
+
+    /**
+     * Packs a move without promotion.
+     *
+     * @param from  The origin square index (0-63)
+     * @param to    The destination square index (0-63)
+     * @param flags Combination of the flag constants
+     * @return The packed move
+     */
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    /**
+     * Packs a move.
+     *
+     * @param from      The origin square index (0-63)
+     * @param to        The destination square index (0-63)
+     * @param flags     Combination of the flag constants
+     * @param promotion The promotion piece type code, or 0 for none
+     * @return The packed move
+     */
+    public static int encode(int from, int to, int flags, int promotion) {
+        return from | (to << 6) | (flags << 12) | (promotion << 16);
+    }
+
+    /**
+     * Gets the origin square of a packed move.
+     *
+     * @param move The packed move
+     * @return The origin square index (0-63)
+     */
+    public static int getFrom(int move) {
+        return move & 0x3F;
+    }
+
+    /**
+     * Gets the destination square of a packed move.
+     *
+     * @param move The packed move
+     * @return The destination square index (0-63)
+     */
+    public static int getTo(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * Gets the flags of a packed move.
+     *
+     * @param move The packed move
+     * @return Combination of the flag constants
+     */
+    public static int getFlags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    /**
+     * Gets the promotion piece type of a packed move.
+     *
+     * @param move The packed move
+     * @return The promotion type code (e.g. {@link Piece#QUEEN}), or 0 for none
+     */
+    public static int getPromotion(int move) {
+        return (move >>> 16) & 0x7;
+    }
+
+    /**
+     * Checks if a packed move captures a piece, including en passant.
+     *
+     * @param move The packed move
+     * @return true if the move is a capture
+     */
+    public static boolean isCapture(int move) {
+        return (getFlags(move) & (CAPTURE | EN_PASSANT)) != 0;
+    }
+
+    /**
+     * Checks if a packed move is a castling move.
+     *
+     * @param move The packed move
+     * @return true if the move is castling
+     */
+    public static boolean isCastling(int move) {
+        return (getFlags(move) & CASTLING) != 0;
+    }
+
+    /**
+     * Checks if a packed move is an en passant capture.
+     *
+     * @param move The packed move
+     * @return true if the move is en passant
+     */
+    public static boolean isEnPassant(int move) {
+        return (getFlags(move) & EN_PASSANT) != 0;
+    }
+
+    /**
+     * Checks if a packed move promotes a pawn.
+     *
+     * @param move The packed move
+     * @return true if the move is a promotion
+     */
+    public static boolean isPromotion(int move) {
+        return getPromotion(move) != 0;
+    }
+
+    /**
+     * Packs a full {@link Move}. The move's moving piece must be set.
+     *
+     * @param move The move to pack
+     * @return The packed move
+     */
+    public static int fromMove(Move move) {
+        int from = Bitboards.square(move.getStart().getX(), move.getStart().getY());
+        int to = Bitboards.square(move.getEnd().getX(), move.getEnd().getY());
+        int flags = 0;
+        if (move.isCastling()) {
+            flags |= CASTLING;
+        }
+        if (move.isEnPassant()) {
+            flags |= EN_PASSANT;
+        } else if (move.getCapturedPiece() != null) {
+            flags |= CAPTURE;
+        }
+        if (move.getMovingPiece().getType() == Piece.PAWN && Math.abs(from - to) == 16) {
+            flags |= DOUBLE_PUSH;
+        }
+        int promotion = move.isPromotion() ? move.getPromotedPiece().getType() : 0;
+        return encode(from, to, flags, promotion);
+    }
+
+    /**
+     * Builds a full {@link Move} from a packed move.
+     * The board must be in the position the move is played from.
+     *
+     * @param move  The packed move
+     * @param board The board before the move is made
+     * @return A move with its pieces and special-move details filled in
+     */
+    public static Move toMove(int move, Board board) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        Piece movingPiece = board.getPieceAt(from);
+        Move result = new Move(Bitboards.toPosition(from), Bitboards.toPosition(to));
+        result.setMovingPiece(movingPiece);
+        result.setCapturedPiece(board.getPieceAt(to));
+
+        if (isCastling(move)) {
+            boolean kingSide = to > from;
+            int rookFrom = kingSide ? from + 3 : from - 4;
+            int rookTo = kingSide ? from + 1 : from - 1;
+            result.setCastlingMove(Bitboards.toPosition(rookFrom), Bitboards.toPosition(rookTo),
+                    board.getPieceAt(rookFrom));
+        }
+
+        if (isEnPassant(move)) {
+            int captureSquare = Bitboards.square(Bitboards.rankOf(from), Bitboards.fileOf(to));
+            result.setEnPassant(true);
+            result.setEnPassantCapturePosition(Bitboards.toPosition(captureSquare));
+            result.setCapturedPiece(board.getPieceAt(captureSquare));
+        }
+
+        if (isPromotion(move)) {
+            result.setPromotedPiece(Piece.create(getPromotion(move), movingPiece.getPieceColor()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Formats a packed move in coordinate notation, e.g. "e2e4" or "e7e8q".
+     *
+     * @param move The packed move
+     * @return The move in coordinate notation
+     */
+    public static String toString(int move) {
+        StringBuilder text = new StringBuilder(5);
+        appendSquare(text, getFrom(move));
+        appendSquare(text, getTo(move));
+        if (isPromotion(move)) {
+            text.append(" pnbrqk".charAt(getPromotion(move)));
+        }
+        return text.toString();
+    }
+
+    private static void appendSquare(StringBuilder text, int square) {
+        text.append((char) ('a' + Bitboards.fileOf(square))).append((char) ('1' + Bitboards.rankOf(square)));
+    }
+}
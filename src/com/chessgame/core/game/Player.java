@@ -1,12 +1,14 @@
 package com.chessgame.core.game;
 
+import com.chessgame.core.pieces.PieceColor;
+
 /**
  * Represents a chess player.
  * Each player has a color (White or Black).
  */
 public class Player {
-    /** The color of the player's pieces ("White" or "Black") */
-    private final String color;
+    /** The color of the player's pieces */
+    private final PieceColor color;
 
     /**
      * Creates a new player with the specified color.
@@ -14,6 +16,15 @@ public class Player {
      * @param color The color of the player's pieces ("White" or "Black")
      */
     public Player(String color) {
+        this(PieceColor.fromName(color));
+    }
+
+    /**
+     * Creates a new player with the specified color.
+     *
+     * @param color The color of the player's pieces
+     */
+    public Player(PieceColor color) {
         this.color = color;
     }
 
@@ -23,6 +34,15 @@ public class Player {
      * @return The color ("White" or "Black")
      */
     public String getColor() {
+        return color.getName();
+    }
+
+    /**
+     * Gets the color of the player's pieces.
+     *
+     * @return The color
+     */
+    public PieceColor getPieceColor() {
         return color;
     }
 }
\ No newline at end of file
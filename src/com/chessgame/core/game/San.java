@@ -0,0 +1,372 @@
+package com.chessgame.core.game;
+
+import com.chessgame.core.board.Attacks;
+import com.chessgame.core.board.Bitboards;
+import com.chessgame.core.board.Board;
+import com.chessgame.core.pieces.Piece;
+
+/**
+ * Reads and writes moves in Standard Algebraic Notation (SAN), such as
+ * "Nbd2", "exd6", "e8=Q+" or "O-O-O".
+ * <p>
+ * A SAN move only makes sense in its position: it names the moving piece,
+ * the destination and just enough of the origin to tell candidates apart.
+ * Both directions work backwards from the destination with the attack
+ * tables: the pieces of the right type that could reach the square are the
+ * attacks of that piece type from the destination itself, so candidates are
+ * found with a few table lookups instead of generating every legal move.
+ * Each candidate is then checked for pins and checks, so a move that parses
+ * is also known to be legal. Check, mate and annotation suffixes ("+", "#",
+ * "!", "?") are ignored when reading.
+ */
+public final class San {
+    /** Piece letters by type code; pawns have none */
+    private static final String PIECE_LETTERS = "  NBRQK";
+
+    /** The origin file must be written to tell candidates apart */
+    static final int FILE = 1;
+
+    /** The origin rank must be written to tell candidates apart */
+    static final int RANK = 2;
+
+    /** Per-thread buffer for the replies that tell check from mate */
+    private static final ThreadLocal<MoveList> REPLIES = ThreadLocal.withInitial(MoveList::new);
+
+    private San() {
+    }
+
+    /**
+     * Finds the legal move a SAN string stands for.
+     *
+     * @param board The position the move is played in
+     * @param san   The move in SAN
+     * @return The packed move, or {@link PackedMove#NONE} if the text is not
+     *         a legal move or is ambiguous
+     */
+    public static int parse(Board board, CharSequence san) {
+        return parse(board, san, 0, san.length());
+    }
+
+    /**
+     * Finds the legal move that part of a character sequence stands for.
+     *
+     * @param board The position the move is played in
+     * @param text  The text holding the move
+     * @param start The index of the first character of the move
+     * @param end   The index after the last character of the move
+     * @return The packed move, or {@link PackedMove#NONE} if the text is not
+     *         a legal move or is ambiguous
+     */
+    public static int parse(Board board, CharSequence text, int start, int end) {
+        // Drop check, mate and annotation suffixes
+        while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        if (end - start < 2) {
+            return PackedMove.NONE;
+        }
+
+        // Castling, also written with zeros
+        char first = text.charAt(start);
+        if (first == 'O' || first == '0') {
+            int length = end - start;
+            if (length != 3 && length != 5) {
+                return PackedMove.NONE;
+            }
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (((i - start) % 2 == 0 ? c != first : c != '-')) {
+                    return PackedMove.NONE;
+                }
+            }
+            int kingSquare = board.getKingSquare(board.getSideToMove());
+            int homeSquare = board.getSideToMove() == Piece.WHITE ? 4 : 60;
+            if (kingSquare != homeSquare) {
+                return PackedMove.NONE;
+            }
+            int move = PackedMove.encode(kingSquare, length == 3 ? kingSquare + 2 : kingSquare - 2,
+                    PackedMove.CASTLING);
+            return LegalMoveGenerator.isLegal(board, move) ? move : PackedMove.NONE;
+        }
+
+        int type = Piece.PAWN;
+        int i = start;
+        if (first >= 'B' && first <= 'R') {
+            type = PIECE_LETTERS.indexOf(first);
+            if (type < Piece.KNIGHT) {
+                return PackedMove.NONE;
+            }
+            i++;
+        }
+
+        // Promotion suffix, "=Q" or just "Q"
+        int promotion = 0;
+        char last = text.charAt(end - 1);
+        if (last >= 'B' && last <= 'R') {
+            promotion = PIECE_LETTERS.indexOf(last);
+            if (type != Piece.PAWN || promotion < Piece.KNIGHT || promotion == Piece.KING) {
+                return PackedMove.NONE;
+            }
+            end--;
+            if (end > i && text.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+
+        // The destination is the last two characters; anything before it is
+        // an origin file and/or rank, with an optional capture sign
+        if (end - i < 2) {
+            return PackedMove.NONE;
+        }
+        int toFile = text.charAt(end - 2) - 'a';
+        int toRank = text.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return PackedMove.NONE;
+        }
+        long hint = -1L;
+        boolean capture = false;
+        boolean fileGiven = false;
+        boolean rankGiven = false;
+        for (; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h' && !fileGiven && !rankGiven) {
+                hint &= Bitboards.FILE_A << (c - 'a');
+                fileGiven = true;
+            } else if (c >= '1' && c <= '8' && !rankGiven) {
+                hint &= Bitboards.RANK_1 << (8 * (c - '1'));
+                rankGiven = true;
+            } else if (c == 'x' && i == end - 3) {
+                capture = true;
+            } else {
+                return PackedMove.NONE;
+            }
+        }
+
+        int to = Bitboards.square(toRank, toFile);
+        int us = board.getSideToMove();
+        if ((board.getColorBitboard(us) & Bitboards.bit(to)) != 0) {
+            return PackedMove.NONE;
+        }
+        if (type == Piece.PAWN) {
+            // A pawn capture names its file; a push never does
+            if (capture != fileGiven || rankGiven) {
+                return PackedMove.NONE;
+            }
+            boolean lastRank = toRank == (us == Piece.WHITE ? 7 : 0);
+            if (lastRank != (promotion != 0)) {
+                return PackedMove.NONE;
+            }
+        }
+
+        int found = PackedMove.NONE;
+        long candidates = origins(board, us, type, to, capture) & hint;
+        while (candidates != 0) {
+            int from = Bitboards.lowestSquare(candidates);
+            candidates &= candidates - 1;
+            int move = encode(board, from, to, promotion);
+            if (LegalMoveGenerator.isLegal(board, move)) {
+                if (found != PackedMove.NONE) {
+                    return PackedMove.NONE; // Ambiguous
+                }
+                found = move;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes a legal move in SAN, with the origin file or rank where another
+     * piece of the same type could also reach the destination, and a check
+     * or mate suffix.
+     *
+     * @param board The position the move is played in; the move is made and
+     *              taken back to look for check
+     * @param move  The packed move
+     * @return The move in SAN
+     */
+    public static String format(Board board, int move) {
+        StringBuilder out = new StringBuilder(8);
+        format(board, move, out);
+        return out.toString();
+    }
+
+    /**
+     * Appends a legal move in SAN to a builder, with the origin file or rank
+     * where another piece of the same type could also reach the destination,
+     * and a check or mate suffix.
+     *
+     * @param board The position the move is played in; the move is made and
+     *              taken back to look for check
+     * @param move  The packed move
+     * @param out   The builder to append to
+     */
+    public static void format(Board board, int move, StringBuilder out) {
+        int from = PackedMove.getFrom(move);
+        int type = Piece.typeOf(board.getPieceCode(from));
+        int disambiguation = disambiguation(board, move);
+
+        char suffix = 0;
+        board.makeMove(move);
+        int us = board.getSideToMove();
+        if (board.isSquareAttacked(board.getKingSquare(us), 1 - us)) {
+            MoveList replies = REPLIES.get();
+            replies.clear();
+            LegalMoveGenerator.generate(board, replies);
+            suffix = replies.isEmpty() ? '#' : '+';
+        }
+        board.unmakeMove();
+
+        append(out, type, from, PackedMove.getTo(move), PackedMove.isCapture(move), PackedMove.isCastling(move),
+                PackedMove.getPromotion(move), disambiguation, suffix);
+    }
+
+    /**
+     * Appends a move in SAN from its already worked out parts. Both the
+     * packed-move formatter and {@link Move#getNotation()} write through
+     * here, so the two always render a move the same way.
+     *
+     * @param out            The builder to append to
+     * @param type           The moving piece type
+     * @param from           The origin square index (0-63)
+     * @param to             The destination square index (0-63)
+     * @param capture        Whether the move captures, including en passant
+     * @param castling       Whether the move is castling
+     * @param promotion      The promotion piece type, or 0
+     * @param disambiguation {@link #FILE} and/or {@link #RANK}, or 0
+     * @param suffix         '+', '#', or 0 for none
+     */
+    static void append(StringBuilder out, int type, int from, int to, boolean capture, boolean castling,
+                       int promotion, int disambiguation, char suffix) {
+        if (castling) {
+            out.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            if (type == Piece.PAWN) {
+                if (capture) {
+                    out.append((char) ('a' + Bitboards.fileOf(from)));
+                }
+            } else {
+                out.append(PIECE_LETTERS.charAt(type));
+                if ((disambiguation & FILE) != 0) {
+                    out.append((char) ('a' + Bitboards.fileOf(from)));
+                }
+                if ((disambiguation & RANK) != 0) {
+                    out.append((char) ('1' + Bitboards.rankOf(from)));
+                }
+            }
+            if (capture) {
+                out.append('x');
+            }
+            out.append((char) ('a' + Bitboards.fileOf(to))).append((char) ('1' + Bitboards.rankOf(to)));
+            if (promotion != 0) {
+                out.append('=').append(PIECE_LETTERS.charAt(promotion));
+            }
+        }
+        if (suffix != 0) {
+            out.append(suffix);
+        }
+    }
+
+    /**
+     * Works out what a piece move has to name of its origin so no other legal
+     * move of the same piece type to the same square reads the same. Pawn
+     * captures always name their file and are not covered here.
+     *
+     * @param board The position the move is played in
+     * @param move  The packed move
+     * @return {@link #FILE} and/or {@link #RANK}, or 0 if the move is unique
+     */
+    static int disambiguation(Board board, int move) {
+        int from = PackedMove.getFrom(move);
+        int to = PackedMove.getTo(move);
+        int type = Piece.typeOf(board.getPieceCode(from));
+        if (type == Piece.PAWN || type == Piece.KING) {
+            return 0;
+        }
+        long others = origins(board, board.getSideToMove(), type, to, false) & ~Bitboards.bit(from);
+        boolean sameFile = false;
+        boolean sameRank = false;
+        boolean ambiguous = false;
+        while (others != 0) {
+            int other = Bitboards.lowestSquare(others);
+            others &= others - 1;
+            if (!LegalMoveGenerator.isLegal(board, PackedMove.encode(other, to, PackedMove.getFlags(move)))) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= Bitboards.fileOf(other) == Bitboards.fileOf(from);
+            sameRank |= Bitboards.rankOf(other) == Bitboards.rankOf(from);
+        }
+        if (!ambiguous) {
+            return 0;
+        }
+        if (!sameFile) {
+            return FILE;
+        }
+        return sameRank ? FILE | RANK : RANK;
+    }
+
+    /**
+     * Finds the pieces of one type and color that could move to a square,
+     * ignoring pins, by looking up that piece type's attacks from the square.
+     *
+     * @param capture For pawns, whether the move is a capture rather than a push
+     */
+    private static long origins(Board board, int us, int type, int to, boolean capture) {
+        long pieces = board.getPieceBitboard(us, type);
+        long occupied = board.getOccupiedBitboard();
+        switch (type) {
+            case Piece.PAWN:
+                if (capture) {
+                    long targets = board.getColorBitboard(1 - us);
+                    if (to == board.getEnPassantSquare()) {
+                        targets |= Bitboards.bit(to);
+                    }
+                    return (targets & Bitboards.bit(to)) != 0 ? Attacks.pawnAttacks(1 - us, to) & pieces : 0L;
+                }
+                if ((occupied & Bitboards.bit(to)) != 0) {
+                    return 0L;
+                }
+                int back = us == Piece.WHITE ? -8 : 8;
+                int one = to + back;
+                if (one < 0 || one > 63) {
+                    return 0L;
+                }
+                if ((pieces & Bitboards.bit(one)) != 0) {
+                    return Bitboards.bit(one);
+                }
+                int doubleRank = us == Piece.WHITE ? 3 : 4;
+                if (Bitboards.rankOf(to) == doubleRank && (occupied & Bitboards.bit(one)) == 0) {
+                    return pieces & Bitboards.bit(one + back);
+                }
+                return 0L;
+            case Piece.KNIGHT:
+                return Attacks.knightAttacks(to) & pieces;
+            case Piece.BISHOP:
+                return Attacks.bishopAttacks(to, occupied) & pieces;
+            case Piece.ROOK:
+                return Attacks.rookAttacks(to, occupied) & pieces;
+            case Piece.QUEEN:
+                return Attacks.queenAttacks(to, occupied) & pieces;
+            default:
+                return Attacks.kingAttacks(to) & pieces;
+        }
+    }
+
+    /**
+     * Builds the packed move for a piece going from one square to another,
+     * working out its capture, en passant and double push flags.
+     */
+    private static int encode(Board board, int from, int to, int promotion) {
+        int flags = 0;
+        if (board.getPieceCode(to) != Piece.NO_PIECE) {
+            flags = PackedMove.CAPTURE;
+        } else if (Piece.typeOf(board.getPieceCode(from)) == Piece.PAWN) {
+            if (Bitboards.fileOf(from) != Bitboards.fileOf(to)) {
+                flags = PackedMove.EN_PASSANT;
+            } else if (Math.abs(to - from) == 16) {
+                flags = PackedMove.DOUBLE_PUSH;
+            }
+        }
+        return PackedMove.encode(from, to, flags, promotion);
+    }
+}
@@ -0,0 +1,94 @@
+package com.chessgame.core.opening;
+
+import com.chessgame.core.game.PackedMove;
+
+/**
+ * A move played in a position of an {@link OpeningTree}, with how often it
+ * was played and how those games ended.
+ */
+public class OpeningMove {
+    private final int move;
+    private final int games;
+    private final int whiteWins;
+    private final int draws;
+    private final int blackWins;
+
+    /**
+     * Creates the statistics of a move.
+     *
+     * @param move      The packed move
+     * @param games     The number of games it was played in
+     * @param whiteWins The number of those games White won
+     * @param draws     The number of those games drawn
+     * @param blackWins The number of those games Black won
+     */
+    public OpeningMove(int move, int games, int whiteWins, int draws, int blackWins) {
+        this.move = move;
+        this.games = games;
+        this.whiteWins = whiteWins;
+        this.draws = draws;
+        this.blackWins = blackWins;
+    }
+
+    /**
+     * Gets the move.
+     *
+     * @return The move as a {@link PackedMove} value
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * Gets the number of games the move was played in, including games
+     * without a result.
+     *
+     * @return The game count
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * Gets the number of games White won after this move.
+     *
+     * @return The White win count
+     */
+    public int getWhiteWins() {
+        return whiteWins;
+    }
+
+    /**
+     * Gets the number of drawn games after this move.
+     *
+     * @return The draw count
+     */
+    public int getDraws() {
+        return draws;
+    }
+
+    /**
+     * Gets the number of games Black won after this move.
+     *
+     * @return The Black win count
+     */
+    public int getBlackWins() {
+        return blackWins;
+    }
+
+    /**
+     * Gets White's score over the games with a result, counting a draw as
+     * half a point.
+     *
+     * @return The score (0-1), or NaN if no game had a result
+     */
+    public double getWhiteScore() {
+        int decided = whiteWins + draws + blackWins;
+        return (whiteWins + draws / 2.0) / decided;
+    }
+
+    @Override
+    public String toString() {
+        return PackedMove.toString(move) + " " + games + " (+" + whiteWins + " =" + draws + " -" + blackWins + ")";
+    }
+}
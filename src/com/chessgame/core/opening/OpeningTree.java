@@ -0,0 +1,177 @@
+package com.chessgame.core.opening;
+
+import com.chessgame.core.board.Board;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An opening explorer file: for each position, the moves played in it with
+ * their game counts and results.
+ * <p>
+ * The file is written by {@link OpeningTreeBuilder} and holds a header and
+ * one entry per position and move, sorted by the position's
+ * {@link Board#getZobristKey() Zobrist key} and then by move:
+ * <pre>
+ * header   int magic "COT1", int 0, long entry count
+ * entry    long key, int move, int games, int White wins, int draws,
+ *          int Black wins
+ * </pre>
+ * It is memory-mapped, and a position's moves are found with one binary
+ * search. The entries are mapped in segments of 2^25 entries (896 MB), so
+ * the file is not limited to the 2 GB of a single mapping.
+ */
+public class OpeningTree implements Closeable {
+    /** "COT1" */
+    static final int MAGIC = 0x434F5431;
+
+    /** Size of the header in bytes */
+    static final int HEADER_SIZE = 16;
+
+    /** Size of an entry in bytes */
+    static final int ENTRY_SIZE = 28;
+
+    /** Segments hold 2^25 entries */
+    private static final int SEGMENT_SHIFT = 25;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long size;
+
+    /**
+     * Opens an opening tree file and maps it into memory.
+     *
+     * @param file The opening tree file
+     * @throws IOException if the file cannot be read or is not an opening tree
+     */
+    public OpeningTree(Path file) throws IOException {
+        this(file, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Opens an opening tree file and maps it in segments of a given size.
+     *
+     * @param segmentShift Segments hold 2^segmentShift entries (at most 26)
+     */
+    OpeningTree(Path file, int segmentShift) throws IOException {
+        this.segmentShift = segmentShift;
+        segmentMask = (1L << segmentShift) - 1;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            size = readHeader(channel, file);
+            segments = new MappedByteBuffer[(int) ((size + segmentMask) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << segmentShift;
+                long entries = Math.min(size - first, 1L << segmentShift);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * ENTRY_SIZE,
+                        entries * ENTRY_SIZE);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the moves played in the position on a board.
+     *
+     * @param board The board
+     * @return The moves, most played first
+     */
+    public List<OpeningMove> getMoves(Board board) {
+        return getMoves(board.getZobristKey());
+    }
+
+    /**
+     * Gets the moves played in a position.
+     *
+     * @param key The position's Zobrist key
+     * @return The moves, most played first; empty if the position is not in
+     *         the tree
+     */
+    public List<OpeningMove> getMoves(long key) {
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<OpeningMove> moves = new ArrayList<>();
+        for (long i = low; i < size && keyAt(i) == key; i++) {
+            MappedByteBuffer data = segments[(int) (i >>> segmentShift)];
+            int offset = offset(i) + 8;
+            moves.add(new OpeningMove(data.getInt(offset), data.getInt(offset + 4), data.getInt(offset + 8),
+                    data.getInt(offset + 12), data.getInt(offset + 16)));
+        }
+        moves.sort((a, b) -> Integer.compare(b.getGames(), a.getGames()));
+        return moves;
+    }
+
+    /**
+     * Gets the number of position and move entries in the tree.
+     *
+     * @return The entry count
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Closes the file. The mappings themselves are released when they are
+     * garbage collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long keyAt(long index) {
+        return segments[(int) (index >>> segmentShift)].getLong(offset(index));
+    }
+
+    /**
+     * Gets the position of an entry in its segment.
+     */
+    private int offset(long index) {
+        return (int) (index & segmentMask) * ENTRY_SIZE;
+    }
+
+    /**
+     * Reads the header of a tree or spill file and checks it against the
+     * file's size.
+     *
+     * @return The number of entries
+     */
+    static long readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not an opening tree: " + file);
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening tree: " + file);
+        }
+        long entries = header.getLong(8);
+        if (entries < 0 || HEADER_SIZE + entries * ENTRY_SIZE != channel.size()) {
+            throw new IOException("Corrupt opening tree: " + file);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,645 @@
+package com.chessgame.core.opening;
+
+import com.chessgame.core.archive.GameArchive;
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.San;
+import com.chessgame.core.pgn.PgnGame;
+import com.chessgame.core.pgn.PgnSpliterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Builds an {@link OpeningTree} from a corpus of games.
+ * <p>
+ * Games are replayed on boards, one per thread, up to a maximum number of
+ * plies, and every (position, move) pair is counted with the game's result
+ * in one of a fixed number of shards, chosen by position hash. Each shard
+ * is an open-addressing hash table with a fixed share of the memory budget
+ * and its own lock, so games can be added from many threads at once. When
+ * a shard is full it is sorted and spilled to a file in a work directory
+ * and starts over, so the heap stays bounded however large the corpus is.
+ * {@link #build(Path)} spills what is left and merges all spill files into
+ * the final tree, adding up the counts of pairs that were spilled more than
+ * once. Spills are read through small windows and merged at most 64 at a
+ * time, in stages if there are more, so neither open files nor memory grow
+ * with the size of the corpus.
+ * <p>
+ * Usage: {@code java com.chessgame.core.opening.OpeningTreeBuilder games.pgn|games.cga tree.cot [maxPlies]}
+ * <br>
+ * Builds an opening tree and prints the most played first moves.
+ */
+public class OpeningTreeBuilder {
+    /** Plies of each game counted by default */
+    public static final int DEFAULT_MAX_PLIES = 30;
+
+    /** Memory for the shards by default, in bytes */
+    public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+    /** Number of shards; a power of two */
+    private static final int SHARD_COUNT = 64;
+
+    /** Heap used per slot of a shard's table: key, move and four counts */
+    private static final int BYTES_PER_SLOT = 8 + 4 + 16;
+
+    /** Slots of a shard's table when it is first used */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /** Most spill files merged at once */
+    private static final int MERGE_WIDTH = 64;
+
+    /** Entries read from a spill file at a time during a merge */
+    private static final int READ_WINDOW_ENTRIES = 2048;
+
+    // Result codes, matching the count columns
+    private static final int UNKNOWN = 0;
+    private static final int WHITE_WIN = 1;
+    private static final int DRAW = 2;
+    private static final int BLACK_WIN = 3;
+
+    private final int maxPlies;
+    private final int mergeWidth;
+    private final Path workDirectory;
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+    private final AtomicInteger nextSpill = new AtomicInteger();
+    private final List<Path> spills = new ArrayList<>();
+    private final ThreadLocal<Board> boards = ThreadLocal.withInitial(Board::new);
+
+    /**
+     * Creates a builder with the default ply limit and memory budget.
+     *
+     * @param workDirectory A directory for spill files; created if needed
+     * @throws IOException if the directory cannot be created
+     */
+    public OpeningTreeBuilder(Path workDirectory) throws IOException {
+        this(workDirectory, DEFAULT_MAX_PLIES, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @param workDirectory A directory for spill files; created if needed
+     * @param maxPlies      The number of plies of each game to count
+     * @param memoryBudget  The heap the shards may use, in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public OpeningTreeBuilder(Path workDirectory, int maxPlies, long memoryBudget) throws IOException {
+        this(workDirectory, maxPlies, memoryBudget, MERGE_WIDTH);
+    }
+
+    /**
+     * Creates a builder that merges a given number of spill files at once.
+     *
+     * @param mergeWidth The most spill files to merge at once (at least 2)
+     */
+    OpeningTreeBuilder(Path workDirectory, int maxPlies, long memoryBudget, int mergeWidth) throws IOException {
+        this.maxPlies = maxPlies;
+        this.mergeWidth = mergeWidth;
+        this.workDirectory = workDirectory;
+        Files.createDirectories(workDirectory);
+        long slots = Math.max(INITIAL_CAPACITY, Math.min(1 << 26, memoryBudget / BYTES_PER_SLOT / SHARD_COUNT));
+        int maxCapacity = Integer.highestOneBit((int) slots);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard(maxCapacity);
+        }
+    }
+
+    /**
+     * Counts the opening of a game read from PGN. Safe to call from several
+     * threads at once.
+     *
+     * @param game The game
+     */
+    public void add(PgnGame game) {
+        Board board = boards.get();
+        game.setUp(board);
+        add(board, game.getMoves(), game.getResult());
+    }
+
+    /**
+     * Counts the opening of a game. Safe to call from several threads at
+     * once.
+     *
+     * @param startFen The FEN of the starting position, or null for the
+     *                 standard starting position
+     * @param moves    The moves of the game as packed moves
+     * @param result   "1-0", "0-1", "1/2-1/2", or "*" or null if unknown
+     */
+    public void add(String startFen, MoveList moves, String result) {
+        Board board = boards.get();
+        if (startFen == null || startFen.equals(Fen.START_POSITION)) {
+            board.initialize();
+        } else {
+            Fen.load(board, startFen, 0, startFen.length());
+        }
+        add(board, moves, result);
+    }
+
+    /**
+     * Counts the opening of every game of a PGN file, in parallel.
+     *
+     * @param pgnFile The PGN file
+     * @throws IOException if the file cannot be read or a spill written
+     */
+    public void addAll(Path pgnFile) throws IOException {
+        try (Stream<PgnGame> games = PgnSpliterator.games(pgnFile)) {
+            games.forEach(this::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Counts the opening of every game of an archive, in parallel.
+     *
+     * @param archive The archive
+     * @throws IOException if a spill cannot be written
+     */
+    public void addAll(GameArchive archive) throws IOException {
+        ThreadLocal<MoveList> moveLists = ThreadLocal.withInitial(MoveList::new);
+        try {
+            IntStream.range(0, archive.size()).parallel().forEach(game -> {
+                // Decoding leaves the board at the final position; add() plays from the start again
+                MoveList moves = moveLists.get();
+                archive.readMoves(game, boards.get(), moves);
+                add(archive.getStartFen(game), moves, archive.getResult(game));
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the opening tree: spills the shards and merges every spill
+     * into one file, then deletes the spills. The builder is empty
+     * afterwards.
+     *
+     * @param output The opening tree file
+     * @throws IOException if a spill cannot be read or the tree written
+     */
+    public void build(Path output) throws IOException {
+        try {
+            for (Shard shard : shards) {
+                synchronized (shard) {
+                    shard.spill();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Path> files;
+        synchronized (spills) {
+            files = new ArrayList<>(spills);
+            spills.clear();
+        }
+        // Merge in stages, so only a bounded number of spills is open at once
+        while (files.size() > mergeWidth) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < files.size(); i += mergeWidth) {
+                List<Path> group = files.subList(i, Math.min(i + mergeWidth, files.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                } else {
+                    Path file = newSpillFile();
+                    merge(group, file);
+                    merged.add(file);
+                }
+            }
+            files = merged;
+        }
+        merge(files, output);
+    }
+
+    /**
+     * Merges sorted files into one, adding up the counts of equal pairs,
+     * and deletes them.
+     */
+    private static void merge(List<Path> inputs, Path output) throws IOException {
+        List<SpillCursor> cursors = new ArrayList<>(inputs.size());
+        EntryOutput out = null;
+        try {
+            PriorityQueue<SpillCursor> queue = new PriorityQueue<>();
+            for (Path file : inputs) {
+                SpillCursor cursor = new SpillCursor(file);
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+
+            // Pop entries in (key, move) order and add up equal pairs
+            out = new EntryOutput(output);
+            int[] counts = new int[4];
+            while (!queue.isEmpty()) {
+                SpillCursor first = queue.poll();
+                long key = first.key;
+                int move = first.move;
+                System.arraycopy(first.counts, 0, counts, 0, 4);
+                if (first.next()) {
+                    queue.add(first);
+                }
+                while (!queue.isEmpty() && queue.peek().key == key && queue.peek().move == move) {
+                    SpillCursor same = queue.poll();
+                    for (int i = 0; i < 4; i++) {
+                        counts[i] += same.counts[i];
+                    }
+                    if (same.next()) {
+                        queue.add(same);
+                    }
+                }
+                out.put(key, move, counts);
+            }
+            out.finish();
+            out = null;
+        } finally {
+            if (out != null) {
+                out.abort();
+            }
+            for (SpillCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        for (Path file : inputs) {
+            Files.delete(file);
+        }
+    }
+
+    private Path newSpillFile() {
+        return workDirectory.resolve(String.format("spill-%08d.cot", nextSpill.getAndIncrement()));
+    }
+
+    private void add(Board board, MoveList moves, String result) {
+        int code = resultCode(result);
+        int plies = Math.min(maxPlies, moves.size());
+        try {
+            for (int i = 0; i < plies; i++) {
+                long key = board.getZobristKey();
+                int move = moves.get(i);
+                Shard shard = shards[(int) (key >>> 58) & (SHARD_COUNT - 1)];
+                synchronized (shard) {
+                    shard.add(key, move, code);
+                }
+                board.makeMove(move);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int resultCode(String result) {
+        if ("1-0".equals(result)) {
+            return WHITE_WIN;
+        }
+        if ("0-1".equals(result)) {
+            return BLACK_WIN;
+        }
+        if ("1/2-1/2".equals(result)) {
+            return DRAW;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Builds an opening tree from the command line.
+     *
+     * @param args The PGN or archive file, the tree file and an optional ply
+     *             limit
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: OpeningTreeBuilder games.pgn|games.cga tree.cot [maxPlies]");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path output = Paths.get(args[1]).toAbsolutePath();
+        int maxPlies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_PLIES;
+        Path work = Files.createTempDirectory(output.getParent(), "opening-spills");
+
+        long start = System.nanoTime();
+        OpeningTreeBuilder builder = new OpeningTreeBuilder(work, maxPlies, DEFAULT_MEMORY_BUDGET);
+        if (source.toString().endsWith(".pgn")) {
+            builder.addAll(source);
+        } else {
+            try (GameArchive archive = new GameArchive(source)) {
+                builder.addAll(archive);
+            }
+        }
+        builder.build(output);
+        int spillCount = builder.nextSpill.get();
+        Files.delete(work);
+        long nanos = System.nanoTime() - start;
+
+        try (OpeningTree tree = new OpeningTree(output)) {
+            System.out.printf("%,d entries from %,d spill file(s) in %.0f ms%n", tree.size(), spillCount, nanos / 1e6);
+            Board board = new Board();
+            board.initialize();
+            for (OpeningMove move : tree.getMoves(board)) {
+                double score = move.getWhiteScore();
+                System.out.printf("%-6s %,9d  +%d =%d -%d  %s%n", San.format(board, move.getMove()),
+                        move.getGames(), move.getWhiteWins(), move.getDraws(), move.getBlackWins(),
+                        Double.isNaN(score) ? "-" : String.format("%.1f%%", score * 100));
+            }
+        }
+    }
+
+    /**
+     * One shard of the counts: an open-addressing table from (key, move)
+     * to four counts. The table doubles as it fills, up to its share of the
+     * memory budget, and is spilled to a sorted file when that is half full.
+     * Callers hold the shard's lock.
+     */
+    private final class Shard {
+        private final int maxCapacity;
+        private long[] keys;
+        private int[] moves;
+        private int[] counts;
+        private int size;
+
+        Shard(int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+        }
+
+        void add(long key, int move, int result) throws IOException {
+            if (keys == null) {
+                allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+            }
+            int slot = find(key, move);
+            if (moves[slot] == 0) {
+                keys[slot] = key;
+                moves[slot] = move;
+                size++;
+            }
+            counts[slot * 4]++;
+            if (result != UNKNOWN) {
+                counts[slot * 4 + result]++;
+            }
+            if (size * 2 >= keys.length) {
+                if (keys.length < maxCapacity) {
+                    grow();
+                } else {
+                    spill();
+                }
+            }
+        }
+
+        /**
+         * Finds the slot of a pair, or the empty slot it would go in.
+         */
+        private int find(long key, int move) {
+            int mask = keys.length - 1;
+            long hash = key + move * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 29)) & mask;
+            // A packed move is never 0, so 0 marks an empty slot
+            while (moves[slot] != 0 && (keys[slot] != key || moves[slot] != move)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            moves = new int[capacity];
+            counts = new int[capacity * 4];
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMoves = moves;
+            int[] oldCounts = counts;
+            allocate(keys.length * 2);
+            for (int old = 0; old < oldMoves.length; old++) {
+                if (oldMoves[old] != 0) {
+                    int slot = find(oldKeys[old], oldMoves[old]);
+                    keys[slot] = oldKeys[old];
+                    moves[slot] = oldMoves[old];
+                    System.arraycopy(oldCounts, old * 4, counts, slot * 4, 4);
+                }
+            }
+        }
+
+        /**
+         * Writes the entries sorted by key and move to a new spill file and
+         * empties the table.
+         */
+        void spill() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            int[] order = new int[size];
+            int used = 0;
+            for (int slot = 0; slot < moves.length; slot++) {
+                if (moves[slot] != 0) {
+                    order[used++] = slot;
+                }
+            }
+            sort(order);
+
+            Path file = newSpillFile();
+            EntryOutput out = new EntryOutput(file);
+            try {
+                int[] entry = new int[4];
+                for (int slot : order) {
+                    System.arraycopy(counts, slot * 4, entry, 0, 4);
+                    out.put(keys[slot], moves[slot], entry);
+                }
+                out.finish();
+                out = null;
+            } finally {
+                if (out != null) {
+                    out.abort();
+                }
+            }
+            synchronized (spills) {
+                spills.add(file);
+            }
+            Arrays.fill(moves, 0);
+            Arrays.fill(counts, 0);
+            size = 0;
+        }
+
+        /**
+         * Sorts slots by key and then by move, 16 bits at a time from the
+         * lowest bits of the move to the highest bits of the key. Each pass
+         * is stable, so earlier passes order the slots a later pass leaves
+         * tied.
+         */
+        private void sort(int[] order) {
+            int[] sorted = new int[order.length];
+            int[] buckets = new int[1 << 16];
+            for (int pass = 0; pass < 6; pass++) {
+                boolean byKey = pass >= 2;
+                int shift = byKey ? (pass - 2) * 16 : pass * 16;
+                Arrays.fill(buckets, 0);
+                for (int slot : order) {
+                    buckets[digit(slot, byKey, shift)]++;
+                }
+                int total = 0;
+                for (int d = 0; d < buckets.length; d++) {
+                    int count = buckets[d];
+                    buckets[d] = total;
+                    total += count;
+                }
+                for (int slot : order) {
+                    sorted[buckets[digit(slot, byKey, shift)]++] = slot;
+                }
+                System.arraycopy(sorted, 0, order, 0, order.length);
+            }
+        }
+
+        /**
+         * Gets 16 bits of a slot's move or key, with the key's sign bit
+         * flipped so negative keys sort first.
+         */
+        private int digit(int slot, boolean byKey, int shift) {
+            if (!byKey) {
+                return (moves[slot] >>> shift) & 0xFFFF;
+            }
+            long bits = shift == 48 ? keys[slot] ^ Long.MIN_VALUE : keys[slot];
+            return (int) (bits >>> shift) & 0xFFFF;
+        }
+    }
+
+    /**
+     * Writes sorted entries to a temporary file and moves it into place when
+     * done, so an opening tree or spill is never seen half written.
+     */
+    private static final class EntryOutput {
+        private final Path file;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long entries;
+
+        EntryOutput(Path file) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.position(OpeningTree.HEADER_SIZE);
+        }
+
+        void put(long key, int move, int[] counts) throws IOException {
+            if (buffer.remaining() < OpeningTree.ENTRY_SIZE) {
+                flush();
+            }
+            buffer.putLong(key).putInt(move);
+            for (int count : counts) {
+                buffer.putInt(count);
+            }
+            entries++;
+        }
+
+        void finish() throws IOException {
+            try {
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(OpeningTree.HEADER_SIZE);
+                header.putInt(OpeningTree.MAGIC).putInt(0).putLong(entries).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void abort() {
+            try {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                // Leave the temporary file; it is never read
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Walks the entries of one spill file during a merge, reading a small
+     * window of it at a time.
+     */
+    private static final class SpillCursor implements Comparable<SpillCursor>, Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer window = ByteBuffer.allocate(READ_WINDOW_ENTRIES * OpeningTree.ENTRY_SIZE);
+        private final int[] counts = new int[4];
+        private long unread;
+        private long position = OpeningTree.HEADER_SIZE;
+        private long key;
+        private int move;
+
+        SpillCursor(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                unread = OpeningTree.readHeader(channel, file);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            window.limit(0);
+        }
+
+        boolean next() throws IOException {
+            if (!window.hasRemaining()) {
+                if (unread == 0) {
+                    return false;
+                }
+                window.clear();
+                window.limit((int) Math.min(window.capacity(), unread * OpeningTree.ENTRY_SIZE));
+                while (window.hasRemaining()) {
+                    int read = channel.read(window, position);
+                    if (read < 0) {
+                        throw new IOException("Spill file truncated");
+                    }
+                    position += read;
+                }
+                window.flip();
+                unread -= window.limit() / OpeningTree.ENTRY_SIZE;
+            }
+            key = window.getLong();
+            move = window.getInt();
+            for (int i = 0; i < 4; i++) {
+                counts[i] = window.getInt();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        public int compareTo(SpillCursor other) {
+            int byKey = Long.compare(key, other.key);
+            return byKey != 0 ? byKey : Integer.compare(move, other.move);
+        }
+    }
+}
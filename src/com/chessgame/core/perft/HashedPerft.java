@@ -0,0 +1,180 @@
+package com.chessgame.core.perft;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.game.LegalMoveGenerator;
+import com.chessgame.core.game.MoveList;
+
+/**
+ * Perft with a transposition cache.
+ * <p>
+ * Deep perft reaches the same positions through many move orders. Subtree
+ * counts are cached by (Zobrist key, remaining depth) in a fixed-size table
+ * with a power-of-two number of slots and an always-replace policy, so a
+ * transposed subtree is counted once. Each slot is two longs: the position
+ * key and the node count packed with the depth it was counted to.
+ * <p>
+ * Usage: {@code java com.chessgame.core.perft.HashedPerft [depth] [position|fen] [--hash MB]}
+ * <br>
+ * Without a position the whole {@link PerftPosition} suite is run. The exit
+ * code is 1 if any count does not match.
+ */
+public class HashedPerft {
+    private static final int DEFAULT_DEPTH = 6;
+    private static final int DEFAULT_HASH_MB = 64;
+
+    /** Bytes per table slot: a key and a packed count */
+    private static final int SLOT_BYTES = 16;
+
+    /** Low bits of a stored value holding the depth */
+    private static final int DEPTH_BITS = 8;
+
+    /** Key, value pairs; a value of 0 marks an empty slot */
+    private final long[] table;
+    private final int mask;
+
+    private MoveList[] buffers = new MoveList[0];
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a hashed perft counter.
+     *
+     * @param hashMegabytes The memory budget for the table, rounded down to a power of two
+     */
+    public HashedPerft(int hashMegabytes) {
+        long slots = Long.highestOneBit(Math.max(1L, (long) hashMegabytes * 1024 * 1024 / SLOT_BYTES));
+        slots = Math.min(slots, 1 << 29);
+        this.table = new long[(int) slots * 2];
+        this.mask = (int) slots - 1;
+    }
+
+    /**
+     * Counts the leaf nodes below the given position. The board is left
+     * unchanged. The cache is kept between calls.
+     *
+     * @param board The position to count from
+     * @param depth The number of plies to search
+     * @return The number of leaf nodes
+     */
+    public long count(Board board, int depth) {
+        if (buffers.length <= depth) {
+            MoveList[] grown = new MoveList[depth + 1];
+            for (int i = 0; i < grown.length; i++) {
+                grown[i] = i < buffers.length ? buffers[i] : new MoveList();
+            }
+            buffers = grown;
+        }
+        return countNodes(board, depth);
+    }
+
+    private long countNodes(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        // Depth 1 is a bulk count, cheaper than a table probe
+        long key = board.getZobristKey();
+        int slot = ((int) key & mask) << 1;
+        if (depth > 1) {
+            probes++;
+            long stored = table[slot + 1];
+            if (table[slot] == key && stored != 0 && (int) (stored & ((1 << DEPTH_BITS) - 1)) == depth) {
+                hits++;
+                return stored >>> DEPTH_BITS;
+            }
+        }
+
+        MoveList moves = buffers[depth];
+        moves.clear();
+        LegalMoveGenerator.generate(board, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += countNodes(board, depth - 1);
+            board.unmakeMove();
+        }
+
+        table[slot] = key;
+        table[slot + 1] = (nodes << DEPTH_BITS) | depth;
+        return nodes;
+    }
+
+    /**
+     * Gets the share of cache probes that found their subtree count.
+     *
+     * @return The hit rate (0.0-1.0) since the last reset
+     */
+    public double getHitRate() {
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    /**
+     * Gets the size of the cache.
+     *
+     * @return The number of table slots
+     */
+    public int getSlotCount() {
+        return mask + 1;
+    }
+
+    /**
+     * Resets the hit statistics, keeping the cached counts.
+     */
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+
+    /**
+     * Runs hashed perft from the command line.
+     *
+     * @param args Optional depth, position name or FEN, and {@code --hash MB}
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        int hashMegabytes = DEFAULT_HASH_MB;
+        String position = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--hash") && i + 1 < args.length) {
+                hashMegabytes = Integer.parseInt(args[++i]);
+            } else if (args[i].matches("\\d+")) {
+                depth = Integer.parseInt(args[i]);
+            } else {
+                position = args[i];
+            }
+        }
+
+        System.out.printf("Hash: %d MB%n", hashMegabytes);
+        boolean passed = true;
+        if (position == null) {
+            for (PerftPosition reference : PerftPosition.values()) {
+                int positionDepth = Math.min(depth, reference.getMaxDepth());
+                long nodes = run(reference.name(), reference.createBoard(), positionDepth, hashMegabytes);
+                boolean match = nodes == reference.getExpectedNodes(positionDepth);
+                System.out.println(match ? "  ok" : "  FAIL, expected " + reference.getExpectedNodes(positionDepth));
+                passed &= match;
+            }
+        } else {
+            run(position, Perft.findPosition(position), depth, hashMegabytes);
+            System.out.println();
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static long run(String name, Board board, int depth, int hashMegabytes) {
+        // A fresh table per position, so hit rates are not inflated by earlier runs
+        HashedPerft perft = new HashedPerft(hashMegabytes);
+        long start = System.nanoTime();
+        long nodes = perft.count(board, depth);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-11s depth %d  %,15d nodes  %8.0f ms  %,14d nps  %5.1f%% hits", name, depth, nodes,
+                nanos / 1e6, Perft.nodesPerSecond(nodes, nanos), 100 * perft.getHitRate());
+        return nodes;
+    }
+}
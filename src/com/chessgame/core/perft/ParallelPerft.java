@@ -0,0 +1,162 @@
+package com.chessgame.core.perft;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.game.MoveList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs perft on a {@link ForkJoinPool}.
+ * <p>
+ * The root moves are split into one task each; when there are too few root
+ * moves to keep every worker busy, the second ply is split as well. Every task
+ * plays its move on its own copy of the board and counts the subtree with its
+ * own {@link Perft}, so workers share nothing but the read-only attack and
+ * hash tables. Subtree counts are joined in move order, which makes the total
+ * independent of scheduling.
+ * <p>
+ * Usage: {@code java com.chessgame.core.perft.ParallelPerft [depth] [position|fen] [--pieces|--objects]}
+ * <br>
+ * Counts the position (the start position by default) with 1, 2, 4, ... up
+ * to all available threads and prints the speedup and scaling efficiency
+ * for each thread count.
+ */
+public class ParallelPerft {
+    private static final int DEFAULT_DEPTH = 6;
+
+    private final ForkJoinPool pool;
+    private final Perft.Mode mode;
+
+    /**
+     * Creates a parallel perft counter.
+     *
+     * @param pool The pool to run the subtree tasks on
+     * @param mode The move generation path to count through
+     */
+    public ParallelPerft(ForkJoinPool pool, Perft.Mode mode) {
+        this.pool = pool;
+        this.mode = mode;
+    }
+
+    /**
+     * Counts the leaf nodes below the given position. The board is left
+     * unchanged.
+     *
+     * @param board The position to count from
+     * @param depth The number of plies to search
+     * @return The number of leaf nodes
+     */
+    public long count(Board board, int depth) {
+        MoveList rootMoves = new MoveList();
+        new Perft(mode).generateLegal(board, rootMoves);
+        int splitDepth = rootMoves.size() < pool.getParallelism() * 2 ? 2 : 1;
+        return pool.invoke(new SubtreeTask(board.copy(), mode, depth, splitDepth));
+    }
+
+    /**
+     * Counts one subtree, forking a task per move while the split depth lasts.
+     */
+    private static final class SubtreeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final Perft.Mode mode;
+        private final int depth;
+        private final int splitDepth;
+
+        SubtreeTask(Board board, Perft.Mode mode, int depth, int splitDepth) {
+            this.board = board;
+            this.mode = mode;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected Long compute() {
+            Perft perft = new Perft(mode);
+            if (splitDepth == 0 || depth <= 1) {
+                return perft.count(board, depth);
+            }
+
+            // The split plies go through the same move generation path as the subtrees
+            MoveList moves = new MoveList();
+            perft.generateLegal(board, moves);
+            List<SubtreeTask> tasks = new ArrayList<>(moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                Board child = board.copy();
+                child.makeMove(moves.get(i));
+                tasks.add(new SubtreeTask(child, mode, depth - 1, splitDepth - 1));
+            }
+            invokeAll(tasks);
+
+            long nodes = 0;
+            for (SubtreeTask task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Measures parallel perft scaling from the command line.
+     *
+     * @param args Optional depth, position name or FEN, and {@code --pieces} or {@code --objects}
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        String position = PerftPosition.START.name();
+        Perft.Mode mode = Perft.Mode.LEGAL;
+        for (String arg : args) {
+            if (arg.equals("--pieces")) {
+                mode = Perft.Mode.PIECES;
+            } else if (arg.equals("--objects")) {
+                mode = Perft.Mode.OBJECTS;
+            } else if (arg.matches("\\d+")) {
+                depth = Integer.parseInt(arg);
+            } else {
+                position = arg;
+            }
+        }
+
+        Board board = Perft.findPosition(position);
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(maxThreads);
+
+        System.out.printf("%s depth %d (%s)%n", position, depth, mode);
+        System.out.printf("%7s %15s %10s %14s %8s %11s%n", "threads", "nodes", "ms", "nps", "speedup", "efficiency");
+        // Warm up the JIT so the single-thread baseline is not penalized
+        new Perft(mode).count(board.copy(), Math.min(depth, 4));
+
+        long expectedNodes = -1;
+        double baseMillis = 0;
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                long start = System.nanoTime();
+                long nodes = new ParallelPerft(pool, mode).count(board, depth);
+                long nanos = System.nanoTime() - start;
+                double millis = nanos / 1e6;
+                if (expectedNodes < 0) {
+                    expectedNodes = nodes;
+                    baseMillis = millis;
+                } else if (nodes != expectedNodes) {
+                    System.out.printf("Node count changed with %d threads: %,d vs %,d%n", threads, nodes,
+                            expectedNodes);
+                    System.exit(1);
+                }
+                double speedup = baseMillis / millis;
+                System.out.printf("%7d %,15d %10.0f %,14d %7.2fx %10.0f%%%n", threads, nodes, millis,
+                        Perft.nodesPerSecond(nodes, nanos), speedup, 100 * speedup / threads);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
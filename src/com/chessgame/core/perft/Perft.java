@@ -0,0 +1,268 @@
+package com.chessgame.core.perft;
+
+import com.chessgame.core.board.Bitboards;
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.LegalMoveGenerator;
+import com.chessgame.core.game.Move;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
+import com.chessgame.core.pieces.Piece;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth ("perft").
+ * <p>
+ * Perft is both a correctness gate and a throughput benchmark for move
+ * generation: the counts for the {@link PerftPosition} suite are published,
+ * so any difference points at a rules bug, and nodes per second is a single
+ * number that can be tracked across releases.
+ * <p>
+ * Usage: {@code java com.chessgame.core.perft.Perft [depth] [position|fen] [--pieces|--objects] [--divide]}
+ * <br>
+ * Without a position the whole suite is run, each position to the given depth
+ * or its deepest known count, whichever is smaller. The exit code is 1 if any
+ * count does not match.
+ */
+public class Perft {
+    /**
+     * The move generation path to count through.
+     */
+    public enum Mode {
+        /** {@link LegalMoveGenerator}, as used by the game for validation */
+        LEGAL,
+
+        /**
+         * Each piece's own {@link Piece#generateMoves} (the path behind
+         * {@link Piece#calculateLegalMoves}), made on the board and kept
+         * only if the king is not left attacked
+         */
+        PIECES,
+
+        /**
+         * Each piece's {@link Piece#calculateLegalMoves}, the {@link Move}
+         * objects the game builds for the board view, packed back and kept
+         * only if the king is not left attacked. Much slower than the other
+         * modes, since every move is allocated twice.
+         */
+        OBJECTS
+    }
+
+    private static final int DEFAULT_DEPTH = 5;
+
+    private final Mode mode;
+
+    /** One move buffer per remaining depth, so counting allocates nothing outside {@link Mode#OBJECTS} */
+    private MoveList[] buffers = new MoveList[0];
+
+    /**
+     * Creates a perft counter.
+     *
+     * @param mode The move generation path to count through
+     */
+    public Perft(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Counts the leaf nodes below the given position. The board is left
+     * unchanged.
+     *
+     * @param board The position to count from
+     * @param depth The number of plies to search (0 returns 1)
+     * @return The number of leaf nodes
+     */
+    public long count(Board board, int depth) {
+        ensureBuffers(depth);
+        return countNodes(board, depth);
+    }
+
+    /**
+     * Counts the leaf nodes below each root move separately, which narrows a
+     * count mismatch down to a single move.
+     *
+     * @param board The position to count from
+     * @param depth The number of plies to search (at least 1)
+     * @return Leaf counts keyed by root move in coordinate notation, in generation order
+     */
+    public Map<String, Long> divide(Board board, int depth) {
+        ensureBuffers(depth);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        MoveList moves = buffers[depth];
+        generate(board, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            if (mode == Mode.LEGAL || !isKingLeftAttacked(board)) {
+                counts.put(PackedMove.toString(move), countNodes(board, depth - 1));
+            }
+            board.unmakeMove();
+        }
+        return counts;
+    }
+
+    private long countNodes(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = buffers[depth];
+        generate(board, moves);
+
+        // Legal moves at the last ply are leaves, so they need not be made
+        if (depth == 1 && mode == Mode.LEGAL) {
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            if (mode == Mode.LEGAL || !isKingLeftAttacked(board)) {
+                nodes += countNodes(board, depth - 1);
+            }
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Generates the legal moves of a position through this counter's path,
+     * dropping the moves that leave the king attacked when the path
+     * generates pseudo-legal moves.
+     */
+    void generateLegal(Board board, MoveList moves) {
+        if (mode == Mode.LEGAL) {
+            generate(board, moves);
+            return;
+        }
+        MoveList generated = new MoveList();
+        generate(board, generated);
+        moves.clear();
+        for (int i = 0; i < generated.size(); i++) {
+            board.makeMove(generated.get(i));
+            if (!isKingLeftAttacked(board)) {
+                moves.add(generated.get(i));
+            }
+            board.unmakeMove();
+        }
+    }
+
+    private void generate(Board board, MoveList moves) {
+        moves.clear();
+        if (mode == Mode.LEGAL) {
+            LegalMoveGenerator.generate(board, moves);
+            return;
+        }
+        int color = board.getSideToMove();
+        for (int i = 0; i < board.getPieceCount(color); i++) {
+            int square = board.getPieceSquare(color, i);
+            if (mode == Mode.PIECES) {
+                board.getPieceAt(square).generateMoves(board, square, moves);
+            } else {
+                List<Move> pieceMoves = board.getPieceAt(square).calculateLegalMoves(board,
+                        Bitboards.toPosition(square));
+                for (Move move : pieceMoves) {
+                    moves.add(PackedMove.fromMove(move));
+                }
+            }
+        }
+    }
+
+    private static boolean isKingLeftAttacked(Board board) {
+        // The side that just moved is the one not to move now
+        int mover = 1 - board.getSideToMove();
+        return board.isSquareAttacked(board.getKingSquare(mover), board.getSideToMove());
+    }
+
+    private void ensureBuffers(int depth) {
+        if (buffers.length <= depth) {
+            MoveList[] grown = new MoveList[depth + 1];
+            for (int i = 0; i < grown.length; i++) {
+                grown[i] = i < buffers.length ? buffers[i] : new MoveList();
+            }
+            buffers = grown;
+        }
+    }
+
+    /**
+     * Runs perft from the command line.
+     *
+     * @param args Optional depth, position name or FEN, {@code --pieces} or {@code --objects}, and
+     *             {@code --divide}
+     */
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        String position = null;
+        Mode mode = Mode.LEGAL;
+        boolean divide = false;
+        for (String arg : args) {
+            if (arg.equals("--pieces")) {
+                mode = Mode.PIECES;
+            } else if (arg.equals("--objects")) {
+                mode = Mode.OBJECTS;
+            } else if (arg.equals("--divide")) {
+                divide = true;
+            } else if (arg.matches("\\d+")) {
+                depth = Integer.parseInt(arg);
+            } else {
+                position = arg;
+            }
+        }
+
+        Perft perft = new Perft(mode);
+        boolean passed = true;
+        if (position == null) {
+            long totalNodes = 0;
+            long totalNanos = 0;
+            for (PerftPosition reference : PerftPosition.values()) {
+                int positionDepth = Math.min(depth, reference.getMaxDepth());
+                Board board = reference.createBoard();
+                long start = System.nanoTime();
+                long nodes = perft.count(board, positionDepth);
+                long nanos = System.nanoTime() - start;
+                boolean match = nodes == reference.getExpectedNodes(positionDepth);
+                passed &= match;
+                totalNodes += nodes;
+                totalNanos += nanos;
+                System.out.printf("%-11s depth %d  %,15d nodes  %s  %8.0f ms  %,13d nps%n", reference,
+                        positionDepth, nodes, match ? "ok  " : "FAIL", nanos / 1e6, nodesPerSecond(nodes, nanos));
+            }
+            System.out.printf("%nTotal %,d nodes in %.0f ms: %,d nps (%s)%n", totalNodes, totalNanos / 1e6,
+                    nodesPerSecond(totalNodes, totalNanos), mode);
+        } else {
+            Board board = findPosition(position);
+            long start = System.nanoTime();
+            long nodes = 0;
+            if (divide) {
+                for (Map.Entry<String, Long> entry : perft.divide(board, depth).entrySet()) {
+                    System.out.println(entry.getKey() + ": " + entry.getValue());
+                    nodes += entry.getValue();
+                }
+                System.out.println();
+            } else {
+                nodes = perft.count(board, depth);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Nodes: %,d  Time: %.0f ms  %,d nps%n", nodes, nanos / 1e6,
+                    nodesPerSecond(nodes, nanos));
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    static Board findPosition(String name) {
+        for (PerftPosition reference : PerftPosition.values()) {
+            if (reference.name().equalsIgnoreCase(name)) {
+                return reference.createBoard();
+            }
+        }
+        return Fen.parse(name);
+    }
+
+    static long nodesPerSecond(long nodes, long nanos) {
+        return nanos > 0 ? (long) (nodes * 1e9 / nanos) : 0;
+    }
+}
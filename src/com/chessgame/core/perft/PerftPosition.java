@@ -0,0 +1,81 @@
+package com.chessgame.core.perft;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+
+/**
+ * The standard perft reference positions with their published leaf counts.
+ * Together they cover castling, en passant (including the discovered check
+ * along the rank), promotions and checks, so a generator that matches all of
+ * them is very unlikely to have a rules bug.
+ */
+public enum PerftPosition {
+    /** The initial position */
+    START("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            20L, 400L, 8902L, 197281L, 4865609L, 119060324L, 3195901860L),
+
+    /** "Kiwipete": castling, pins and en passant in a busy middlegame */
+    KIWIPETE("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            48L, 2039L, 97862L, 4085603L, 193690690L, 8031647685L),
+
+    /** Rook endgame full of en passant discovered checks along the rank */
+    EN_PASSANT("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            14L, 191L, 2812L, 43238L, 674624L, 11030083L, 178633661L, 3009794393L),
+
+    /** Promotions, underpromotions and castling out of check */
+    PROMOTION("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            6L, 264L, 9467L, 422333L, 15833292L, 706045033L),
+
+    /** Promotion with capture next to a discovered check */
+    DISCOVERED("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            44L, 1486L, 62379L, 2103487L, 89941194L),
+
+    /** Symmetrical middlegame */
+    MIDDLEGAME("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            46L, 2079L, 89890L, 3894594L, 164075551L, 6923051137L);
+
+    private final String fen;
+    private final long[] expectedNodes;
+
+    PerftPosition(String fen, long... expectedNodes) {
+        this.fen = fen;
+        this.expectedNodes = expectedNodes;
+    }
+
+    /**
+     * Gets the position in Forsyth-Edwards Notation.
+     *
+     * @return The FEN string
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * Gets the deepest depth with a known node count.
+     *
+     * @return The maximum depth
+     */
+    public int getMaxDepth() {
+        return expectedNodes.length;
+    }
+
+    /**
+     * Gets the published number of leaf nodes at the given depth.
+     *
+     * @param depth The depth (1 to {@link #getMaxDepth()})
+     * @return The expected node count
+     */
+    public long getExpectedNodes(int depth) {
+        return expectedNodes[depth - 1];
+    }
+
+    /**
+     * Creates a new board set up in this position.
+     *
+     * @return The board
+     */
+    public Board createBoard() {
+        return Fen.parse(fen);
+    }
+}
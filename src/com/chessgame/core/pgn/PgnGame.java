@@ -0,0 +1,186 @@
+package com.chessgame.core.pgn;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.board.Fen;
+import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One game read by a {@link PgnReader}: its tags, the main line as packed
+ * moves and its result.
+ * <p>
+ * The reader reuses a single instance for every game, so a listener must
+ * copy whatever it wants to keep before returning.
+ */
+public class PgnGame {
+    /** A board per thread for replaying games in queries */
+    private static final ThreadLocal<Board> BOARDS = ThreadLocal.withInitial(Board::new);
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final MoveList moves = new MoveList();
+    private String result;
+    private long offset;
+
+    /**
+     * Gets the value of a tag, such as "White" or "Event".
+     *
+     * @param name The tag name
+     * @return The tag value, or null if the game has no such tag
+     */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * Gets all tags in the order they appeared.
+     *
+     * @return The tags by name (read-only)
+     */
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * Gets the main line of the game.
+     *
+     * @return The moves as {@link PackedMove} values, in order
+     */
+    public MoveList getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the position the game starts from, from its FEN tag.
+     *
+     * @return The FEN string of the starting position
+     */
+    public String getStartFen() {
+        String fen = tags.get("FEN");
+        return fen != null ? fen : Fen.START_POSITION;
+    }
+
+    /**
+     * Gets the year the game was played, from its Date tag.
+     *
+     * @return The year, or -1 if the date is missing or has no year
+     */
+    public int getYear() {
+        String date = tags.get("Date");
+        if (date == null || date.length() < 4) {
+            return -1;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            year = year * 10 + c - '0';
+        }
+        return year;
+    }
+
+    /**
+     * Gets the game termination marker.
+     *
+     * @return "1-0", "0-1", "1/2-1/2" or "*", or null if the game had none
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Gets where the game starts in the input.
+     *
+     * @return The byte offset of the game's first tag or move
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Sets up a board at the game's starting position.
+     *
+     * @param board The board to set up
+     */
+    public void setUp(Board board) {
+        String fen = tags.get("FEN");
+        if (fen == null) {
+            board.initialize();
+        } else {
+            Fen.load(board, fen, 0, fen.length());
+        }
+    }
+
+    /**
+     * Checks whether the game passes through a position, replaying it on a
+     * board owned by the calling thread.
+     *
+     * @param zobristKey The position's hash, from {@link Board#getZobristKey()}
+     * @return true if the starting position or the position after any move
+     *         has this hash
+     */
+    public boolean reaches(long zobristKey) {
+        Board board = BOARDS.get();
+        setUp(board);
+        if (board.getZobristKey() == zobristKey) {
+            return true;
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            if (board.getZobristKey() == zobristKey) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a copy of this game that the reader will not reuse.
+     *
+     * @return The copy
+     */
+    public PgnGame copy() {
+        PgnGame copy = new PgnGame();
+        copy.tags.putAll(tags);
+        for (int i = 0; i < moves.size(); i++) {
+            copy.moves.add(moves.get(i));
+        }
+        copy.result = result;
+        copy.offset = offset;
+        return copy;
+    }
+
+    /**
+     * Replays the game on a {@link ChessGame}, starting a new game from the
+     * starting position and playing the main line through the game's own
+     * move validation.
+     *
+     * @param game The game to play the moves on
+     * @return The number of moves played; less than the length of the main
+     *         line if the game rejected a move
+     */
+    public int replay(ChessGame game) {
+        return game.replay(getStartFen(), moves);
+    }
+
+    void reset(long offset) {
+        tags.clear();
+        moves.clear();
+        result = null;
+        this.offset = offset;
+    }
+
+    void putTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    void setResult(String result) {
+        this.result = result;
+    }
+}
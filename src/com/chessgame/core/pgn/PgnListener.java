@@ -0,0 +1,25 @@
+package com.chessgame.core.pgn;
+
+/**
+ * Receives the games read by a {@link PgnReader}.
+ */
+public interface PgnListener {
+    /**
+     * Called for each game, after its termination marker or when the next
+     * game's tags begin. The game object is reused for the next game.
+     *
+     * @param game The game
+     */
+    void onGame(PgnGame game);
+
+    /**
+     * Called when part of a game cannot be read, such as an illegal move or
+     * a broken tag. The reader skips the rest of that game and carries on
+     * with the next one. Ignores the error by default.
+     *
+     * @param offset  The byte offset of the problem in the input
+     * @param message A description of the problem
+     */
+    default void onError(long offset, String message) {
+    }
+}
@@ -0,0 +1,510 @@
+package com.chessgame.core.pgn;
+
+import com.chessgame.core.board.Board;
+import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.game.PackedMove;
+import com.chessgame.core.game.San;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads games in Portable Game Notation (PGN) from a byte stream.
+ * <p>
+ * The input is consumed in fixed-size chunks by a byte-level state machine,
+ * so memory use does not depend on the size of the file or of any game:
+ * tags, comments ({@code {...}} and {@code ;...}), escape lines, NAGs
+ * ({@code $n}) and nested variations are recognized and skipped without
+ * being buffered. Main-line moves are resolved from SAN on a reused board
+ * as they are read (see {@link San}), so every game handed to the
+ * {@link PgnListener} is known to be legal, as a compact list of packed
+ * moves.
+ * <p>
+ * A game that cannot be read (an illegal or ambiguous move, a broken tag or
+ * a bad FEN) is reported to the listener by byte offset and dropped; reading
+ * continues with the next game.
+ * <p>
+ * Usage: {@code java com.chessgame.core.pgn.PgnReader file.pgn [--replay]}
+ * <br>
+ * Reads a file and prints the number of games, errors and games per minute.
+ * With {@code --replay} every game is also played through {@link ChessGame}.
+ */
+public class PgnReader {
+    /** Bytes read from the channel at a time */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Longest move token kept; longer ones are reported as errors */
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    /** Longest tag name or value kept; longer ones are cut off */
+    private static final int MAX_TAG_LENGTH = 4096;
+
+    // Parser states
+    private static final int MOVETEXT = 0;
+    private static final int TOKEN = 1;
+    private static final int NAG = 2;
+    private static final int BRACE_COMMENT = 3;
+    private static final int LINE_COMMENT = 4;
+    private static final int TAG_NAME = 5;
+    private static final int TAG_BEFORE_VALUE = 6;
+    private static final int TAG_VALUE = 7;
+    private static final int TAG_VALUE_ESCAPE = 8;
+    private static final int TAG_AFTER_VALUE = 9;
+
+    private final PgnListener listener;
+    private final PgnGame game = new PgnGame();
+    private final Board board = new Board();
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    private final StringBuilder token = new StringBuilder(MAX_TOKEN_LENGTH);
+    private final StringBuilder tagName = new StringBuilder();
+    private final byte[] tagValue = new byte[MAX_TAG_LENGTH];
+    private int tagValueLength;
+
+    private int state = MOVETEXT;
+    private long offset;
+    private long tokenOffset;
+    private boolean lineStart = true;
+    private int variationDepth;
+
+    /** True once the current game's first tag or move has been seen */
+    private boolean inGame;
+
+    /** True once the current game's moves have started */
+    private boolean inMovetext;
+
+    /** True if the current game had an error and is being skipped */
+    private boolean skipping;
+
+    private long gameCount;
+    private long errorCount;
+
+    /**
+     * Creates a reader that hands its games to a listener.
+     *
+     * @param listener The listener for games and errors
+     */
+    public PgnReader(PgnListener listener) {
+        this(listener, 0);
+    }
+
+    /**
+     * Creates a reader for input that starts part way into a file, so its
+     * offsets are reported relative to the start of the file.
+     *
+     * @param listener The listener for games and errors
+     * @param offset   The byte offset of the first byte of input
+     */
+    PgnReader(PgnListener listener, long offset) {
+        this.listener = listener;
+        this.offset = offset;
+    }
+
+    /**
+     * Reads every game in a file.
+     *
+     * @param file The PGN file
+     * @throws IOException if the file cannot be read
+     */
+    public void read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            read(channel);
+        }
+    }
+
+    /**
+     * Reads every game from a channel, up to its end.
+     *
+     * @param channel The channel to read PGN bytes from
+     * @throws IOException if the channel cannot be read
+     */
+    public void read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        int length;
+        while ((length = channel.read(buffer)) >= 0) {
+            process(length);
+            buffer.clear();
+        }
+        finish();
+    }
+
+    /**
+     * Reads every game in a buffer, such as a memory-mapped region of a file,
+     * from its position to its limit.
+     *
+     * @param buffer The buffer holding PGN bytes
+     */
+    public void read(ByteBuffer buffer) {
+        feed(buffer);
+        finish();
+    }
+
+    /**
+     * Reads the bytes of a buffer, from its position to its limit, as the
+     * next part of the input. Games are handed to the listener as soon as
+     * they end.
+     *
+     * @param buffer The buffer holding PGN bytes
+     */
+    void feed(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), CHUNK_SIZE);
+            buffer.get(chunk, 0, length);
+            process(length);
+        }
+    }
+
+    /**
+     * Gets the number of games read so far, including dropped ones.
+     *
+     * @return The game count
+     */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Gets the number of errors reported so far.
+     *
+     * @return The error count
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    private void process(int length) {
+        for (int i = 0; i < length; i++, offset++) {
+            int b = chunk[i] & 0xFF;
+            // Skip a UTF-8 byte order mark
+            if (offset < 3 && b >= 0x80) {
+                continue;
+            }
+            processByte((char) b);
+            lineStart = b == '\n';
+        }
+    }
+
+    private void processByte(char c) {
+        switch (state) {
+            case MOVETEXT:
+                processMovetext(c);
+                break;
+            case TOKEN:
+                if (isDelimiter(c)) {
+                    endToken();
+                    state = MOVETEXT;
+                    processMovetext(c);
+                } else if (token.length() <= MAX_TOKEN_LENGTH) {
+                    token.append(c);
+                }
+                break;
+            case NAG:
+                if (c < '0' || c > '9') {
+                    state = MOVETEXT;
+                    processMovetext(c);
+                }
+                break;
+            case BRACE_COMMENT:
+                if (c == '}') {
+                    state = MOVETEXT;
+                }
+                break;
+            case LINE_COMMENT:
+                if (c == '\n') {
+                    state = MOVETEXT;
+                }
+                break;
+            case TAG_NAME:
+                if (c == '"' && tagName.length() > 0) {
+                    tagValueLength = 0;
+                    state = TAG_VALUE;
+                } else if (c <= ' ' && tagName.length() > 0) {
+                    state = TAG_BEFORE_VALUE;
+                } else if (c > ' ' && c != '"' && c != ']' && tagName.length() < MAX_TAG_LENGTH) {
+                    tagName.append(c);
+                } else {
+                    tagError();
+                }
+                break;
+            case TAG_BEFORE_VALUE:
+                if (c == '"') {
+                    tagValueLength = 0;
+                    state = TAG_VALUE;
+                } else if (c > ' ' || c == '\n') {
+                    tagError();
+                }
+                break;
+            case TAG_VALUE:
+                if (c == '\\') {
+                    state = TAG_VALUE_ESCAPE;
+                } else if (c == '"') {
+                    state = TAG_AFTER_VALUE;
+                } else if (c == '\n') {
+                    tagError();
+                } else if (tagValueLength < MAX_TAG_LENGTH) {
+                    tagValue[tagValueLength++] = (byte) c;
+                }
+                break;
+            case TAG_VALUE_ESCAPE:
+                if (tagValueLength < MAX_TAG_LENGTH) {
+                    tagValue[tagValueLength++] = (byte) c;
+                }
+                state = TAG_VALUE;
+                break;
+            case TAG_AFTER_VALUE:
+                if (c == ']') {
+                    game.putTag(tagName.toString(), new String(tagValue, 0, tagValueLength, StandardCharsets.UTF_8));
+                    state = MOVETEXT;
+                } else if (c > ' ' || c == '\n') {
+                    tagError();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown parser state: " + state);
+        }
+    }
+
+    private void processMovetext(char c) {
+        if (c <= ' ') {
+            return;
+        }
+        // A '%' escapes the rest of its line only at the start of a line; elsewhere it is part of a token
+        if (c == '%' && lineStart) {
+            state = LINE_COMMENT;
+            return;
+        }
+        switch (c) {
+            case '[':
+                // A tag after moves means the previous game had no termination marker
+                if (inMovetext) {
+                    endGame();
+                }
+                if (!inGame) {
+                    startGame(offset);
+                }
+                tagName.setLength(0);
+                state = TAG_NAME;
+                break;
+            case '{':
+                state = BRACE_COMMENT;
+                break;
+            case ';':
+                state = LINE_COMMENT;
+                break;
+            case '$':
+                state = NAG;
+                break;
+            case '(':
+                variationDepth++;
+                break;
+            case ')':
+                if (variationDepth > 0) {
+                    variationDepth--;
+                }
+                break;
+            default:
+                token.setLength(0);
+                token.append(c);
+                tokenOffset = offset;
+                state = TOKEN;
+                break;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == ';' || c == '[' || c == ']'
+                || c == '$';
+    }
+
+    private void endToken() {
+        int length = token.length();
+
+        // Termination markers end the game, even one being skipped
+        if (isResult(length)) {
+            if (variationDepth == 0) {
+                if (!inGame) {
+                    startGame(tokenOffset);
+                }
+                game.setResult(token.toString());
+                endGame();
+            }
+            return;
+        }
+        if (variationDepth > 0 || skipping) {
+            return;
+        }
+
+        // Strip a move number, "12." or "12...", and skip bare numbers and dots
+        int start = 0;
+        while (start < length && token.charAt(start) >= '0' && token.charAt(start) <= '9') {
+            start++;
+        }
+        if (start == length || token.charAt(start) == '.') {
+            while (start < length && token.charAt(start) == '.') {
+                start++;
+            }
+            if (start == length) {
+                return;
+            }
+        } else {
+            start = 0; // Not a move number, e.g. "0-0"
+        }
+
+        if (!inMovetext && !startMovetext()) {
+            return;
+        }
+        if (length > MAX_TOKEN_LENGTH) {
+            error(tokenOffset, "Move text too long");
+            return;
+        }
+
+        int move = San.parse(board, token, start, length);
+        if (move == PackedMove.NONE) {
+            error(tokenOffset, "Illegal or ambiguous move: " + token.subSequence(start, length));
+            return;
+        }
+        board.makeMove(move);
+        game.getMoves().add(move);
+    }
+
+    private boolean isResult(int length) {
+        switch (length) {
+            case 1:
+                return token.charAt(0) == '*';
+            case 3:
+                return "1-0".contentEquals(token) || "0-1".contentEquals(token);
+            case 7:
+                return "1/2-1/2".contentEquals(token);
+            default:
+                return false;
+        }
+    }
+
+    private void startGame(long gameOffset) {
+        game.reset(gameOffset);
+        inGame = true;
+        inMovetext = false;
+        skipping = false;
+        variationDepth = 0;
+    }
+
+    /**
+     * Sets up the board for the game's first move, from its FEN tag if it
+     * has one.
+     *
+     * @return false if the starting position could not be set up
+     */
+    private boolean startMovetext() {
+        if (!inGame) {
+            startGame(tokenOffset);
+        }
+        inMovetext = true;
+        try {
+            game.setUp(board);
+            return true;
+        } catch (IllegalArgumentException e) {
+            error(game.getOffset(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void endGame() {
+        if (inGame) {
+            gameCount++;
+            if (!skipping) {
+                listener.onGame(game);
+            }
+        }
+        inGame = false;
+        inMovetext = false;
+        skipping = false;
+        variationDepth = 0;
+    }
+
+    /**
+     * Ends the input, handing over a game that had no termination marker.
+     */
+    void finish() {
+        if (state == TOKEN) {
+            endToken();
+        } else if (state != MOVETEXT && state != NAG && state != LINE_COMMENT) {
+            error(offset, "Unexpected end of input");
+        }
+        state = MOVETEXT;
+        if (inGame) {
+            endGame();
+        }
+    }
+
+    private void tagError() {
+        error(offset, "Malformed tag");
+        // Skip the rest of the line
+        state = LINE_COMMENT;
+    }
+
+    private void error(long errorOffset, String message) {
+        errorCount++;
+        skipping = true;
+        if (!inGame) {
+            startGame(errorOffset);
+            skipping = true;
+        }
+        listener.onError(errorOffset, message);
+    }
+
+    /**
+     * Reads a PGN file from the command line and reports throughput.
+     *
+     * @param args The file name and optional {@code --replay}
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String file = null;
+        boolean replay = false;
+        for (String arg : args) {
+            if (arg.equals("--replay")) {
+                replay = true;
+            } else {
+                file = arg;
+            }
+        }
+        if (file == null) {
+            System.out.println("Usage: PgnReader file.pgn [--replay]");
+            System.exit(2);
+        }
+
+        final boolean replayGames = replay;
+        final ChessGame chessGame = new ChessGame();
+        final long[] moves = new long[2];
+        PgnReader reader = new PgnReader(new PgnListener() {
+            @Override
+            public void onGame(PgnGame game) {
+                moves[0] += game.getMoves().size();
+                if (replayGames && game.replay(chessGame) != game.getMoves().size()) {
+                    moves[1]++;
+                }
+            }
+
+            @Override
+            public void onError(long offset, String message) {
+                System.out.printf("Byte %,d: %s%n", offset, message);
+            }
+        });
+
+        long start = System.nanoTime();
+        reader.read(Paths.get(file));
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%,d games, %,d moves, %,d errors in %.0f ms: %,.0f games per minute%n",
+                reader.getGameCount(), moves[0], reader.getErrorCount(), nanos / 1e6,
+                reader.getGameCount() * 60e9 / Math.max(1, nanos));
+        if (replay) {
+            System.out.printf("%,d games rejected by ChessGame on replay%n", moves[1]);
+        }
+    }
+}
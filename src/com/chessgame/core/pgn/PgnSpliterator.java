@@ -0,0 +1,191 @@
+package com.chessgame.core.pgn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Splits a PGN file into games for parallel streams.
+ * <p>
+ * Each spliterator covers a byte range of the file and reads it with its
+ * own {@link PgnReader}, through positional reads on a shared channel. A
+ * range that has not been read yet is split near its middle at the start
+ * of a game, found as a tag line after a blank line as PGN export format
+ * lays games out, so every worker parses and replays whole games on its
+ * own board and no game is seen twice. Games that cannot be read are
+ * skipped.
+ * <p>
+ * For example, the White score of 1.e4 c5 by year:
+ * <pre>
+ * try (Stream&lt;PgnGame&gt; games = PgnSpliterator.games(file)) {
+ *     Map&lt;Integer, Double&gt; score = games
+ *             .filter(game -&gt; game.getMoves().size() &gt;= 2
+ *                     &amp;&amp; game.getMoves().get(0) == e4 &amp;&amp; game.getMoves().get(1) == c5)
+ *             .collect(Collectors.groupingBy(PgnGame::getYear,
+ *                     Collectors.averagingDouble(game -&gt; score(game.getResult()))));
+ * }
+ * </pre>
+ */
+public class PgnSpliterator implements Spliterator<PgnGame> {
+    /** Bytes read from the file at a time */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /** Ranges smaller than this are not split */
+    private static final long MIN_SPLIT_SIZE = 1 << 20;
+
+    /** Rough size of a game, for size estimates */
+    private static final long AVERAGE_GAME_SIZE = 600;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private final ArrayDeque<PgnGame> pending = new ArrayDeque<>();
+    private PgnReader reader;
+    private long position;
+    private long end;
+    private boolean finished;
+
+    /**
+     * Creates a spliterator over a byte range of a file, which must start
+     * at the start of a game and end at the end of one.
+     *
+     * @param channel The file; it is not closed by the spliterator
+     * @param start   The offset of the first byte
+     * @param end     The offset after the last byte
+     */
+    public PgnSpliterator(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Opens a PGN file as a parallel stream of games. The stream must be
+     * closed to close the file.
+     *
+     * @param file The PGN file
+     * @return The games, in file order
+     * @throws IOException if the file cannot be opened
+     */
+    public static Stream<PgnGame> games(Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return StreamSupport.stream(new PgnSpliterator(channel, 0, channel.size()), true).onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PgnGame> action) {
+        if (reader == null) {
+            reader = new PgnReader(game -> pending.add(game.copy()), position);
+        }
+        while (pending.isEmpty()) {
+            if (finished) {
+                return false;
+            }
+            if (position >= end) {
+                reader.finish();
+                finished = true;
+                continue;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(CHUNK_SIZE, end - position));
+            int length = read(position);
+            if (length < 0) {
+                // The file got shorter
+                end = position;
+                continue;
+            }
+            position += length;
+            buffer.flip();
+            reader.feed(buffer);
+        }
+        action.accept(pending.poll());
+        return true;
+    }
+
+    @Override
+    public Spliterator<PgnGame> trySplit() {
+        // Only a range that has not been read yet can be split, handing off
+        // its first half so the games stay in file order
+        if (reader != null || end - position < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        long split = findGameStart(position + (end - position) / 2);
+        if (split < 0) {
+            return null;
+        }
+        PgnSpliterator prefix = new PgnSpliterator(channel, position, split);
+        position = split;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(1, (end - position) / AVERAGE_GAME_SIZE);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Finds the first game that starts at or after an offset and before the
+     * end of the range: a '[' at the start of a line that follows a blank
+     * line. The partial line the offset falls in is never taken as blank.
+     *
+     * @return The offset of the game's '[', or -1 if there is none
+     */
+    private long findGameStart(long from) {
+        boolean lineSeen = false;
+        boolean lineHasText = false;
+        boolean previousBlank = false;
+        for (long chunkStart = from; chunkStart < end;) {
+            buffer.clear();
+            buffer.limit((int) Math.min(CHUNK_SIZE, end - chunkStart));
+            int length = read(chunkStart);
+            if (length <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    previousBlank = lineSeen && !lineHasText;
+                    lineSeen = true;
+                    lineHasText = false;
+                } else if (b == '[' && lineSeen && !lineHasText && previousBlank) {
+                    return chunkStart + i;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    lineHasText = true;
+                }
+            }
+            chunkStart += length;
+        }
+        return -1;
+    }
+
+    private int read(long offset) {
+        try {
+            return channel.read(buffer, offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
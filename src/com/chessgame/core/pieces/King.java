@@ -1,80 +1,46 @@
 package com.chessgame.core.pieces;
 
+import com.chessgame.core.board.Attacks;
+import com.chessgame.core.board.Bitboards;
 import com.chessgame.core.board.Board;
 import com.chessgame.core.board.Position;
-import com.chessgame.core.game.Move;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
 
 public class King extends Piece {
-    public King(String color) {
-        super(color);
-    }
-
-    @Override
-    public Piece copy() {
-        King newKing = new King(this.getColor());
-        if (this.hasMoved()) {
-            newKing.setHasMoved(true);
-        }
-        return newKing;
-    }
-
-    public void setHasMoved(boolean hasMoved) {
-        this.hasMoved = hasMoved;
-    }
-
-    public boolean hasMoved() {
-        return hasMoved;
+    King(PieceColor color) {
+        super(color, KING);
     }
 
     @Override
-    public List<Move> calculateLegalMoves(Board board, Position currentPosition) {
-        List<Move> legalMoves = new ArrayList<>();
-        int[][] moveOffsets = {
-            {1, 0}, {-1, 0}, {0, 1}, {0, -1},     // Horizontal and vertical moves
-            {1, 1}, {-1, -1}, {1, -1}, {-1, 1}    // Diagonal moves
-        };
-
+    public void generateMoves(Board board, int square, MoveList moves) {
         // Normal king moves
-        for (int[] offset : moveOffsets) {
-            int newX = currentPosition.getX() + offset[0];  // Fixed: Add offset[0] to X coordinate
-            int newY = currentPosition.getY() + offset[1];
-
-            if (board.isValidPosition(newX, newY)) {
-                Piece targetPiece = board.getPieceAt(newX, newY);
-                if (targetPiece == null || !targetPiece.getColor().equals(this.getColor())) {
-                    legalMoves.add(new Move(currentPosition, new Position(newX, newY)));
-                }
-            }
-        }
-
-        // Castling moves
-        if (!hasMoved) {
-            int row = currentPosition.getX();
+        long targets = Attacks.kingAttacks(square) & ~board.getColorBitboard(getColorIndex());
+        addMoves(moves, square, targets, board.getColorBitboard(1 - getColorIndex()));
+
+        // Castling moves, as long as the board still grants the rights
+        int rights = board.getCastlingRights();
+        int kingSideRight = getColorIndex() == WHITE ? Board.WHITE_KINGSIDE : Board.BLACK_KINGSIDE;
+        int queenSideRight = getColorIndex() == WHITE ? Board.WHITE_QUEENSIDE : Board.BLACK_QUEENSIDE;
+        if ((rights & (kingSideRight | queenSideRight)) != 0) {
+            Position currentPosition = Bitboards.toPosition(square);
             // Kingside castling
-            if (canCastle(board, currentPosition, true)) {
-                Position endPos = new Position(row, currentPosition.getY() + 2);
-                legalMoves.add(new Move(currentPosition, endPos));
+            if ((rights & kingSideRight) != 0 && canCastle(board, currentPosition, true)) {
+                moves.add(PackedMove.encode(square, square + 2, PackedMove.CASTLING));
             }
             // Queenside castling
-            if (canCastle(board, currentPosition, false)) {
-                Position endPos = new Position(row, currentPosition.getY() - 2);
-                legalMoves.add(new Move(currentPosition, endPos));
+            if ((rights & queenSideRight) != 0 && canCastle(board, currentPosition, false)) {
+                moves.add(PackedMove.encode(square, square - 2, PackedMove.CASTLING));
             }
         }
-
-        return legalMoves;
     }
 
     private boolean canCastle(Board board, Position kingPos, boolean kingSide) {
         int row = kingPos.getX();
         int rookY = kingSide ? 7 : 0;
         
-        // Check if rook is in place and hasn't moved
-        Piece rook = board.getPieceAt(row, rookY);
-        if (!(rook instanceof Rook) || ((Rook) rook).hasMoved()) {
+        // Check if rook is in place
+        if (board.getPieceCode(Bitboards.square(row, rookY)) != code(getColorIndex(), ROOK)) {
             return false;
         }
 
@@ -82,55 +48,20 @@ public class King extends Piece {
         int start = kingSide ? kingPos.getY() + 1 : 1;
         int end = kingSide ? 6 : kingPos.getY() - 1;
         for (int y = start; y <= end; y++) {
-            if (board.getPieceAt(row, y) != null) {
+            if (board.getPieceCode(Bitboards.square(row, y)) != NO_PIECE) {
                 return false;
             }
         }
 
         // Check if king is not in check and path is not under attack
+        int enemy = 1 - getColorIndex();
         int direction = kingSide ? 1 : -1;
         for (int y = kingPos.getY(); y != kingPos.getY() + (3 * direction); y += direction) {
-            Position pos = new Position(row, y);
-            if (isPositionUnderAttack(board, pos)) {
+            if (board.isSquareAttacked(Bitboards.square(row, y), enemy)) {
                 return false;
             }
         }
 
         return true;
     }
-
-    private boolean isPositionUnderAttack(Board board, Position pos) {
-        String oppositeColor = this.getColor().equals("White") ? "Black" : "White";
-        
-        // Check all positions on the board
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                Piece piece = board.getPieceAt(i, j);
-                // If we find an attacking piece
-                if (piece != null && piece.getColor().equals(oppositeColor)) {
-                    Position piecePos = new Position(i, j);
-                    
-                    // Skip other kings to prevent infinite recursion
-                    if (piece instanceof King) {
-                        // For kings, just check if the position is one move away
-                        int dx = Math.abs(pos.getX() - piecePos.getX());
-                        int dy = Math.abs(pos.getY() - piecePos.getY());
-                        if (dx <= 1 && dy <= 1) {
-                            return true;
-                        }
-                        continue;
-                    }
-                    
-                    // For other pieces, check their legal moves
-                    List<Move> moves = piece.calculateLegalMoves(board, piecePos);
-                    for (Move move : moves) {
-                        if (move.getEnd().equals(pos)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
-    }
 }
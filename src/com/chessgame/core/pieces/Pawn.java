@@ -1,112 +1,61 @@
 package com.chessgame.core.pieces;
 
+import com.chessgame.core.board.Attacks;
+import com.chessgame.core.board.Bitboards;
 import com.chessgame.core.board.Board;
-import com.chessgame.core.board.Position;
-import com.chessgame.core.game.Move;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
 
 public class Pawn extends Piece {
 
-    public Pawn(String color) {
-        super(color);
+    Pawn(PieceColor color) {
+        super(color, PAWN);
     }
 
     @Override
-    public List<Move> calculateLegalMoves(Board board, Position currentPosition) {
-        List<Move> legalMoves = new ArrayList<>();
-        int direction = getColor().equals("White") ? 1 : -1;
-        int startRow = getColor().equals("White") ? 1 : 6;
-        int promotionRow = getColor().equals("White") ? 7 : 0;
+    public void generateMoves(Board board, int square, MoveList moves) {
+        int color = getColorIndex();
+        int direction = color == WHITE ? 8 : -8;
+        int startRow = color == WHITE ? 1 : 6;
+        int promotionRow = color == WHITE ? 7 : 0;
+        int row = Bitboards.rankOf(square);
 
         // Forward moves
-        int newX = currentPosition.getX() + direction;
-        int newY = currentPosition.getY();
-
-        if (board.isValidPosition(newX, newY) && board.getPieceAt(newX, newY) == null) {
-            addMoveWithPossiblePromotion(legalMoves, currentPosition, newX, newY, promotionRow);
+        int target = square + direction;
+        if (target >= 0 && target < 64 && board.getPieceCode(target) == NO_PIECE) {
+            addMoveWithPossiblePromotion(moves, square, target, 0, promotionRow);
 
             // Double move from start position
-            if (currentPosition.getX() == startRow) {
-                newX += direction;
-                if (board.isValidPosition(newX, newY) && board.getPieceAt(newX, newY) == null) {
-                    legalMoves.add(new Move(currentPosition, new Position(newX, newY)));
-                }
+            if (row == startRow && board.getPieceCode(target + direction) == NO_PIECE) {
+                moves.add(PackedMove.encode(square, target + direction, PackedMove.DOUBLE_PUSH));
             }
         }
 
         // Regular captures
-        for (int offset : new int[] { -1, 1 }) {
-            int captureX = currentPosition.getX() + direction;
-            int captureY = currentPosition.getY() + offset;
-
-            if (board.isValidPosition(captureX, captureY)) {
-                Piece targetPiece = board.getPieceAt(captureX, captureY);
-                if (targetPiece != null && !targetPiece.getColor().equals(this.getColor())) {
-                    addMoveWithPossiblePromotion(legalMoves, currentPosition, captureX, captureY, promotionRow);
-                }
-            }
+        long captures = Attacks.pawnAttacks(color, square) & board.getColorBitboard(1 - color);
+        while (captures != 0) {
+            int captureSquare = Bitboards.lowestSquare(captures);
+            captures &= captures - 1;
+            addMoveWithPossiblePromotion(moves, square, captureSquare, PackedMove.CAPTURE, promotionRow);
         }
 
         // En passant
-        if ((getColor().equals("White") && currentPosition.getX() == 4) ||
-                (getColor().equals("Black") && currentPosition.getX() == 3)) {
-
-            Move lastMove = board.getLastMove();
-            if (lastMove != null && lastMove.getMovingPiece() instanceof Pawn) {
-                int lastMoveStart = lastMove.getStart().getX();
-                int lastMoveEnd = lastMove.getEnd().getX();
-
-                // Check if the last move was a pawn double move
-                if (Math.abs(lastMoveStart - lastMoveEnd) == 2) {
-                    int lastMoveY = lastMove.getEnd().getY();
-
-                    // Check if the enemy pawn is adjacent
-                    if (Math.abs(lastMoveY - currentPosition.getY()) == 1) {
-                        Position enPassantPos = new Position(
-                                currentPosition.getX() + direction,
-                                lastMoveY);
-                        Position capturedPawnPos = new Position(lastMove.getEnd().getX(), lastMove.getEnd().getY());
-                        Move enPassantMove = new Move(currentPosition, enPassantPos);
-                        enPassantMove.setEnPassant(true);
-                        enPassantMove.setEnPassantCapturePosition(capturedPawnPos);
-                        legalMoves.add(enPassantMove);
-                    }
-                }
-            }
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare != Board.NO_SQUARE && row == (color == WHITE ? 4 : 3)
+                && (Attacks.pawnAttacks(color, square) & Bitboards.bit(enPassantSquare)) != 0) {
+            moves.add(PackedMove.encode(square, enPassantSquare, PackedMove.EN_PASSANT));
         }
-
-        return legalMoves;
     }
 
-    private void addMoveWithPossiblePromotion(List<Move> moves, Position current, int newX, int newY,
-            int promotionRow) {
-        Move move = new Move(current, new Position(newX, newY));
-
-        if (newX == promotionRow) {
+    private void addMoveWithPossiblePromotion(MoveList moves, int from, int to, int flags, int promotionRow) {
+        if (Bitboards.rankOf(to) == promotionRow) {
             // Create separate moves for each possible promotion piece
-            moves.add(createPromotionMove(move, new Queen(this.getColor())));
-            moves.add(createPromotionMove(move, new Rook(this.getColor())));
-            moves.add(createPromotionMove(move, new Bishop(this.getColor())));
-            moves.add(createPromotionMove(move, new Knight(this.getColor())));
+            moves.add(PackedMove.encode(from, to, flags, QUEEN));
+            moves.add(PackedMove.encode(from, to, flags, ROOK));
+            moves.add(PackedMove.encode(from, to, flags, BISHOP));
+            moves.add(PackedMove.encode(from, to, flags, KNIGHT));
         } else {
-            moves.add(move);
-        }
-    }
-
-    private Move createPromotionMove(Move baseMove, Piece promotedPiece) {
-        Move promotionMove = new Move(baseMove.getStart(), baseMove.getEnd());
-        promotionMove.setPromotedPiece(promotedPiece);
-        return promotionMove;
-    }
-
-    @Override
-    public Piece copy() {
-        Pawn newPawn = new Pawn(this.getColor());
-        if (this.hasMoved()) {
-            newPawn.setHasMoved(true);
+            moves.add(PackedMove.encode(from, to, flags));
         }
-        return newPawn;
     }
 }
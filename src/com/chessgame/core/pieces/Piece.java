@@ -1,33 +1,162 @@
 package com.chessgame.core.pieces;
 
+import com.chessgame.core.board.Bitboards;
 import com.chessgame.core.board.Board;
 import com.chessgame.core.board.Position;
 import com.chessgame.core.game.Move;
+import com.chessgame.core.game.MoveList;
+import com.chessgame.core.game.PackedMove;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Abstract base class for all chess pieces.
  * Defines common properties and behaviors that all chess pieces share.
+ * <p>
+ * Every piece kind also has a compact code, the color index shifted above
+ * the type code (see {@link #code(int, int)}). The board stores these codes
+ * directly, so rule code can compare and switch on small integers instead of
+ * strings or classes; Piece objects are views for callers that want them.
+ * <p>
+ * Pieces are immutable: castling rights and everything else that changes
+ * during a game live on the board. The board hands out one shared instance
+ * per piece kind (see {@link #of(int)}), so copying a board copies no pieces.
  */
 public abstract class Piece {
-    /** The color of the piece ("White" or "Black") */
-    private String color;
+    /** Color index for White pieces, used by bitboard lookups */
+    public static final int WHITE = 0;
+
+    /** Color index for Black pieces, used by bitboard lookups */
+    public static final int BLACK = 1;
+
+    /** Type code for pawns */
+    public static final int PAWN = 1;
+
+    /** Type code for knights */
+    public static final int KNIGHT = 2;
+
+    /** Type code for bishops */
+    public static final int BISHOP = 3;
+
+    /** Type code for rooks */
+    public static final int ROOK = 4;
+
+    /** Type code for queens */
+    public static final int QUEEN = 5;
+
+    /** Type code for kings */
+    public static final int KING = 6;
+
+    /** Piece code of an empty square */
+    public static final int NO_PIECE = 0;
+
+    /** Bits of a piece code holding the type */
+    private static final int TYPE_MASK = 7;
+
+    /** Position of the color bit in a piece code */
+    private static final int COLOR_SHIFT = 3;
+
+    /** Type names by type code, as used for class names and image files */
+    private static final String[] TYPE_NAMES = { null, "Pawn", "Knight", "Bishop", "Rook", "Queen", "King" };
+
+    /** The shared piece for each piece code, null for unused codes */
+    private static final Piece[] SHARED = new Piece[16];
+
+    static {
+        for (PieceColor color : PieceColor.values()) {
+            SHARED[code(color.getIndex(), PAWN)] = new Pawn(color);
+            SHARED[code(color.getIndex(), KNIGHT)] = new Knight(color);
+            SHARED[code(color.getIndex(), BISHOP)] = new Bishop(color);
+            SHARED[code(color.getIndex(), ROOK)] = new Rook(color);
+            SHARED[code(color.getIndex(), QUEEN)] = new Queen(color);
+            SHARED[code(color.getIndex(), KING)] = new King(color);
+        }
+    }
+
+    /** The color of the piece */
+    private final PieceColor color;
+
+    /** The piece code (color and type) */
+    private final byte code;
 
     /**
-     * Flag indicating whether the piece has moved (important for castling and pawn
-     * double moves)
+     * Creates a new piece of the specified color and type. Only the shared
+     * pieces are created; everything else gets them from {@link #of(int)}
+     * or {@link #create(int, PieceColor)}.
+     *
+     * @param color The color of the piece
+     * @param type  The piece type code (e.g. {@link #QUEEN})
      */
-    protected boolean hasMoved; // Changed from private to protected
+    Piece(PieceColor color, int type) {
+        this.color = color;
+        this.code = (byte) code(color.getIndex(), type);
+    }
 
     /**
-     * Creates a new piece with the specified color.
+     * Gets the shared piece of the given type and color.
      *
+     * @param type  The piece type code (e.g. {@link #QUEEN})
      * @param color The color of the piece ("White" or "Black")
+     * @return The shared piece
      */
-    public Piece(String color) {
-        this.color = color;
-        this.hasMoved = false;
+    public static Piece create(int type, String color) {
+        return create(type, PieceColor.fromName(color));
+    }
+
+    /**
+     * Gets the shared piece of the given type and color.
+     *
+     * @param type  The piece type code (e.g. {@link #QUEEN})
+     * @param color The color of the piece
+     * @return The shared piece
+     */
+    public static Piece create(int type, PieceColor color) {
+        if (type < PAWN || type > KING) {
+            throw new IllegalArgumentException("Invalid piece type: " + type);
+        }
+        return SHARED[code(color.getIndex(), type)];
+    }
+
+    /**
+     * Gets the shared piece for a piece code.
+     *
+     * @param code The piece code (see {@link #code(int, int)})
+     * @return The shared piece, or null for {@link #NO_PIECE}
+     */
+    public static Piece of(int code) {
+        return SHARED[code];
+    }
+
+    /**
+     * Gets the piece code for a color and type.
+     *
+     * @param color The color index ({@link #WHITE} or {@link #BLACK})
+     * @param type  The piece type code (e.g. {@link #QUEEN})
+     * @return The piece code, never {@link #NO_PIECE}
+     */
+    public static int code(int color, int type) {
+        return (color << COLOR_SHIFT) | type;
+    }
+
+    /**
+     * Gets the color index of a piece code.
+     *
+     * @param code The piece code (not {@link #NO_PIECE})
+     * @return {@link #WHITE} or {@link #BLACK}
+     */
+    public static int colorOf(int code) {
+        return code >>> COLOR_SHIFT;
+    }
+
+    /**
+     * Gets the type of a piece code.
+     *
+     * @param code The piece code
+     * @return The piece type code, or 0 for {@link #NO_PIECE}
+     */
+    public static int typeOf(int code) {
+        return code & TYPE_MASK;
     }
 
     /**
@@ -36,25 +165,53 @@ public abstract class Piece {
      * @return The color ("White" or "Black")
      */
     public String getColor() {
+        return color.getName();
+    }
+
+    /**
+     * Gets the color of the piece.
+     *
+     * @return The color
+     */
+    public PieceColor getPieceColor() {
         return color;
     }
 
     /**
-     * Checks if the piece has moved.
+     * Gets the color index of the piece.
      *
-     * @return true if the piece has moved, false otherwise
+     * @return {@link #WHITE} or {@link #BLACK}
      */
-    public boolean hasMoved() {
-        return hasMoved;
+    public int getColorIndex() {
+        return colorOf(code);
     }
 
     /**
-     * Sets the moved status of the piece.
+     * Gets the type code of the piece.
      *
-     * @param hasMoved true if the piece has moved, false otherwise
+     * @return One of {@link #PAWN}, {@link #KNIGHT}, {@link #BISHOP},
+     *         {@link #ROOK}, {@link #QUEEN} or {@link #KING}
      */
-    public void setHasMoved(boolean hasMoved) {
-        this.hasMoved = hasMoved;
+    public int getType() {
+        return typeOf(code);
+    }
+
+    /**
+     * Gets the piece code of the piece.
+     *
+     * @return The piece code (see {@link #code(int, int)})
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Gets the name of the piece type.
+     *
+     * @return The type name, e.g. "Knight"
+     */
+    public String getName() {
+        return TYPE_NAMES[getType()];
     }
 
     /**
@@ -64,14 +221,43 @@ public abstract class Piece {
      * @param currentPosition The current position of the piece
      * @return A list of all legal moves for this piece
      */
-    public abstract List<Move> calculateLegalMoves(Board board, Position currentPosition);
+    public List<Move> calculateLegalMoves(Board board, Position currentPosition) {
+        MoveList moves = new MoveList();
+        generateMoves(board, Bitboards.square(currentPosition.getX(), currentPosition.getY()), moves);
+
+        List<Move> legalMoves = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            legalMoves.add(PackedMove.toMove(moves.get(i), board));
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Appends this piece's moves from the given square to a move list as
+     * packed moves, without allocating.
+     *
+     * @param board  The current board state
+     * @param square The square index of the piece (0-63)
+     * @param moves  The list to append {@link PackedMove} values to
+     */
+    public abstract void generateMoves(Board board, int square, MoveList moves);
 
     /**
-     * Creates a deep copy of this piece.
+     * Adds a packed move to each target square in a bitboard.
      *
-     * @return A new piece with the same properties as this one
+     * @param moves   The list to add moves to
+     * @param from    The square index the moves start from
+     * @param targets Bitboard of destination squares
+     * @param enemies Bitboard of squares holding enemy pieces
      */
-    public abstract Piece copy();
+    protected static void addMoves(MoveList moves, int from, long targets, long enemies) {
+        while (targets != 0) {
+            int to = Bitboards.lowestSquare(targets);
+            long bit = targets & -targets;
+            targets ^= bit;
+            moves.add(PackedMove.encode(from, to, (enemies & bit) != 0 ? PackedMove.CAPTURE : 0));
+        }
+    }
 
     /**
      * Returns a string representation of the piece.
@@ -80,6 +266,6 @@ public abstract class Piece {
      */
     @Override
     public String toString() {
-        return this.getClass().getSimpleName() + " (" + color + ")";
+        return getName() + " (" + color.getName() + ")";
     }
 }
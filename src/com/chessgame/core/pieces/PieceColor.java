@@ -0,0 +1,82 @@
+package com.chessgame.core.pieces;
+
+/**
+ * The two sides of a chess game.
+ * Colors compare by identity, and each one maps to the color index used by
+ * the bitboards ({@link Piece#WHITE} or {@link Piece#BLACK}).
+ */
+public enum PieceColor {
+    /** The side that moves first */
+    WHITE("White"),
+
+    /** The side that moves second */
+    BLACK("Black");
+
+    private static final PieceColor[] BY_INDEX = values();
+
+    /** The display name ("White" or "Black") */
+    private final String name;
+
+    PieceColor(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the display name of the color.
+     *
+     * @return "White" or "Black"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the color index used by bitboard lookups.
+     *
+     * @return {@link Piece#WHITE} or {@link Piece#BLACK}
+     */
+    public int getIndex() {
+        return ordinal();
+    }
+
+    /**
+     * Gets the other color.
+     *
+     * @return BLACK for WHITE and WHITE for BLACK
+     */
+    public PieceColor opposite() {
+        return BY_INDEX[1 - ordinal()];
+    }
+
+    /**
+     * Gets the color with the given index.
+     *
+     * @param index {@link Piece#WHITE} or {@link Piece#BLACK}
+     * @return The color
+     */
+    public static PieceColor fromIndex(int index) {
+        return BY_INDEX[index];
+    }
+
+    /**
+     * Gets the color with the given display name.
+     *
+     * @param name "White" or "Black"
+     * @return The color
+     * @throws IllegalArgumentException if the name is neither
+     */
+    public static PieceColor fromName(String name) {
+        if (WHITE.name.equals(name)) {
+            return WHITE;
+        }
+        if (BLACK.name.equals(name)) {
+            return BLACK;
+        }
+        throw new IllegalArgumentException("Invalid color: " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
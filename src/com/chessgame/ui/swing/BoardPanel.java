@@ -14,7 +14,6 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.util.List;
-import java.util.ArrayList;
 
 public class BoardPanel extends JPanel {
     private ChessGame game;
@@ -438,9 +437,9 @@ public class BoardPanel extends JPanel {
         }
 
         // Start selection if clicking on a piece of the current player's color
-        if (piece != null && piece.getColor().equals(game.getCurrentPlayer().getColor())) {
+        if (piece != null && piece.getPieceColor() == game.getCurrentPlayer().getPieceColor()) {
             selectedPosition = new Position(boardX, boardY);
-            validMoves = filterLegalMoves(piece.calculateLegalMoves(game.getBoard(), selectedPosition));
+            validMoves = game.getLegalMoves(selectedPosition);
             mousePressPoint = e.getPoint();
             dragTimer.start();
         }
@@ -565,6 +564,7 @@ public class BoardPanel extends JPanel {
         if (boardY < 0 || boardY >= 8 || boardX < 0 || boardX >= 8) {
             if (hoveredPosition != null) {
                 hoveredPosition = null;
+                setCursor(Cursor.getDefaultCursor());
                 repaint();
             }
             return;
@@ -573,6 +573,10 @@ public class BoardPanel extends JPanel {
         Position newHoveredPosition = new Position(boardX, boardY);
         if (!newHoveredPosition.equals(hoveredPosition)) {
             hoveredPosition = newHoveredPosition;
+            // Show a hand over pieces that can move; answered from the game's per-ply move table
+            setCursor(game.hasLegalMoves(hoveredPosition)
+                    ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
+                    : Cursor.getDefaultCursor());
             repaint();
         }
     }
@@ -613,14 +617,4 @@ public class BoardPanel extends JPanel {
         // Default size if not in container
         return new Dimension(800, 800);
     }
-
-    private List<Move> filterLegalMoves(List<Move> moves) {
-        List<Move> filteredMoves = new ArrayList<>();
-        for (Move move : moves) {
-            if (!game.wouldPutKingInCheck(move.getStart(), move.getEnd())) {
-                filteredMoves.add(move);
-            }
-        }
-        return filteredMoves;
-    }
 }
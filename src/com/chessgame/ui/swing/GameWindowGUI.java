@@ -3,6 +3,7 @@ package com.chessgame.ui.swing;
 import com.chessgame.ChessApplication;
 import com.chessgame.ui.constants.UIConstants;
 import com.chessgame.core.game.ChessGame;
+import com.chessgame.core.game.GameStatus;
 import com.chessgame.core.game.Move;
 import javax.swing.*;
 import java.awt.*;
@@ -338,22 +339,11 @@ public class GameWindowGUI {
         chessClock.switchTurn();
         updateNavigationButtons();
 
-        if (game.isGameOver()) {
+        GameStatus status = game.getStatus();
+        if (status.isGameOver()) {
             chessClock.stop();
             String result = game.getGameResult();
-            StatusType type;
-
-            if (result.contains("stalemate")) {
-                type = StatusType.DRAW;
-            } else if (result.contains("insufficient material") ||
-                    result.contains("fifty-move rule") ||
-                    result.contains("threefold repetition")) {
-                type = StatusType.DRAW;
-            } else if (result.contains("checkmate")) {
-                type = StatusType.SUCCESS;
-            } else {
-                type = StatusType.NORMAL;
-            }
+            StatusType type = status.isDraw() ? StatusType.DRAW : StatusType.SUCCESS;
 
             showGameOver(result);
             updateStatus(result, type);
@@ -2,14 +2,7 @@ package com.chessgame.ui.swing;
 
 import com.chessgame.core.game.ChessGame;
 import com.chessgame.core.game.Move;
-import com.chessgame.core.pieces.Piece;
-import com.chessgame.core.pieces.King;
-import com.chessgame.core.pieces.Queen;
-import com.chessgame.core.pieces.Rook;
 import com.chessgame.ui.constants.UIConstants;
-import com.chessgame.core.pieces.Bishop;
-import com.chessgame.core.pieces.Knight;
-import com.chessgame.core.pieces.Pawn;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
@@ -276,59 +269,7 @@ public class MoveHistoryPanel extends JPanel {
             return "";
         }
 
-        StringBuilder notation = new StringBuilder();
-        Piece piece = move.getMovingPiece();
-
-        // Add piece letter (except for pawns)
-        if (!(piece instanceof Pawn)) {
-            notation.append(getPieceLetter(piece));
-        }
-
-        // Handle castling
-        if (move.isCastling()) {
-            return move.getEnd().getY() > move.getStart().getY() ? "O-O" : "O-O-O";
-        }
-
-        // Add capture symbol
-        if (piece instanceof Pawn && move.getStart().getY() != move.getEnd().getY()) {
-            notation.append(getFileNotation(move.getStart().getY())).append("x");
-        } else if (move.getCapturedPiece() != null) {
-            notation.append("x");
-        }
-
-        // Add destination square
-        notation.append(getFileNotation(move.getEnd().getY()))
-                .append(getRankNotation(move.getEnd().getX()));
-
-        // Add check or checkmate symbol
-        if (move.isCheckmate()) {
-            notation.append("#");
-        } else if (move.isCheck()) {
-            notation.append("+");
-        }
-
-        return notation.toString();
-    }
-
-    private String getPieceLetter(Piece piece) {
-        if (piece instanceof King)
-            return "K";
-        if (piece instanceof Queen)
-            return "Q";
-        if (piece instanceof Rook)
-            return "R";
-        if (piece instanceof Bishop)
-            return "B";
-        if (piece instanceof Knight)
-            return "N";
-        return "";
-    }
-
-    private String getFileNotation(int y) {
-        return String.valueOf((char) ('a' + y));
-    }
-
-    private String getRankNotation(int x) {
-        return String.valueOf(x + 1);
+        // Built once per move, with disambiguation, promotion and check marks
+        return move.getNotation();
     }
 }
@@ -90,7 +90,7 @@ public class PieceIcon implements Icon {
      * @return A string key in the format "PieceType_Color.png"
      */
     private String getImageKey(Piece piece) {
-        String pieceName = piece.getClass().getSimpleName();
+        String pieceName = piece.getName();
         String color = piece.getColor();
         return pieceName + "_" + color + ".png";
     }
@@ -41,10 +41,10 @@ public class PromotionDialog extends JDialog {
         piecesPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
         // Add the piece buttons
-        addPieceButton(piecesPanel, new Queen(color), "Queen");
-        addPieceButton(piecesPanel, new Rook(color), "Rook");
-        addPieceButton(piecesPanel, new Bishop(color), "Bishop");
-        addPieceButton(piecesPanel, new Knight(color), "Knight");
+        addPieceButton(piecesPanel, Piece.create(Piece.QUEEN, color), "Queen");
+        addPieceButton(piecesPanel, Piece.create(Piece.ROOK, color), "Rook");
+        addPieceButton(piecesPanel, Piece.create(Piece.BISHOP, color), "Bishop");
+        addPieceButton(piecesPanel, Piece.create(Piece.KNIGHT, color), "Knight");
 
         add(piecesPanel, BorderLayout.CENTER);
 